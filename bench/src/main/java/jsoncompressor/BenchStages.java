@@ -0,0 +1,43 @@
+package jsoncompressor;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import org.json.simple.JSONArray;
+
+// Runs the compressor stages for the benchmarks in jsoncompressor.bench
+public class BenchStages implements jsoncompressor.bench.Stages {
+    public int lex(byte[] json, boolean byteLexer) throws Exception {
+        java_cup.runtime.Scanner scanner = scanner(json, byteLexer, new Errors(null));
+        int tokens = 0;
+        while (scanner.next_token().sym != sym.EOF) {
+            tokens++;
+        }
+        return tokens;
+    }
+
+    public Object parse(byte[] json, boolean byteLexer) throws Exception {
+        Errors errors = new Errors(null);
+        return new parser(scanner(json, byteLexer, errors), errors).parse().value;
+    }
+
+    public Object compile(Object program) {
+        return ((Json) program).compile();
+    }
+
+    public void write(Object compiled, OutputStream out) throws IOException {
+        JsonWriter.write((JSONArray) compiled, out);
+    }
+
+    public void writeDirect(Object program, OutputStream out) throws IOException {
+        HPackWriter writer = new HPackWriter(out);
+        writer.writeJson((Json) program);
+        writer.flush();
+    }
+
+    private static java_cup.runtime.Scanner scanner(byte[] json, boolean byteLexer, Errors errors) {
+        if (byteLexer) {
+            return new ByteLexer(json, errors);
+        }
+        return new Yylex(new InputStreamReader(new ByteArrayInputStream(json), StandardCharsets.UTF_8), errors);
+    }
+}
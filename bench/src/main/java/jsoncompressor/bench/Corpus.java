@@ -0,0 +1,177 @@
+package jsoncompressor.bench;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Generates benchmark inputs shaped like the sample files in src. The
+ * output is plain ASCII and the same for the same arguments.
+ *
+ * <ul>
+ * <li>{@code mixed}: like test.json, a root array of records that use a
+ *     varying subset of the keys, with nested arrays of small objects
+ *     and the odd bare literal</li>
+ * <li>{@code single}: like test2.json, one root object whose values are
+ *     long arrays of strings</li>
+ * <li>{@code wide}: like test3.json, a root array of records that all
+ *     have every key, with string, number, boolean and nested values</li>
+ * </ul>
+ */
+public final class Corpus {
+    private Corpus() {
+    }
+
+    /**
+     * @param shape   mixed, single or wide
+     * @param records root array length (for single: total array items)
+     * @param keys    distinct keys used by the records
+     */
+    public static byte[] generate(String shape, int records, int keys) {
+        Random random = new Random(42);
+        StringBuilder json = new StringBuilder(records * keys * 16);
+        if (shape.equals("mixed")) {
+            mixed(json, random, records, keys);
+        } else if (shape.equals("single")) {
+            single(json, random, records, keys);
+        } else if (shape.equals("wide")) {
+            wide(json, random, records, keys);
+        } else {
+            throw new IllegalArgumentException("unknown shape " + shape);
+        }
+        return json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void mixed(StringBuilder json, Random random, int records, int keys) {
+        json.append("[\n");
+        for (int i = 0; i < records; i++) {
+            if (i > 0) {
+                json.append(",\n");
+            }
+            if (random.nextInt(20) == 0) {
+                json.append(random.nextBoolean());
+                continue;
+            }
+            json.append("  {");
+            boolean first = true;
+            for (int k = 0; k < keys; k++) {
+                if (k > 0 && random.nextInt(3) == 0) {
+                    continue;
+                }
+                first = separator(json, first);
+                json.append('"').append("key").append(k).append("\": ");
+                switch (k % 4) {
+                case 0:
+                    word(json, random);
+                    break;
+                case 1:
+                    json.append(random.nextInt(100));
+                    break;
+                case 2:
+                    json.append(random.nextBoolean());
+                    break;
+                default:
+                    json.append('[');
+                    int points = 1 + random.nextInt(3);
+                    for (int p = 0; p < points; p++) {
+                        if (p > 0) {
+                            json.append(", ");
+                        }
+                        json.append("{\"x\": ").append(random.nextInt(1000) / 100.0)
+                            .append(", \"y\": ").append(random.nextInt(50)).append('}');
+                    }
+                    json.append(']');
+                }
+            }
+            json.append('}');
+        }
+        json.append("\n]\n");
+    }
+
+    private static void single(StringBuilder json, Random random, int items, int keys) {
+        json.append("{\n");
+        int perKey = Math.max(1, items / keys);
+        for (int k = 0; k < keys; k++) {
+            if (k > 0) {
+                json.append(",\n");
+            }
+            json.append("  \"key").append(k).append("\": [");
+            for (int i = 0; i < perKey; i++) {
+                if (i > 0) {
+                    json.append(", ");
+                }
+                word(json, random);
+            }
+            json.append(']');
+        }
+        json.append("\n}\n");
+    }
+
+    private static void wide(StringBuilder json, Random random, int records, int keys) {
+        json.append("[\n");
+        for (int i = 0; i < records; i++) {
+            if (i > 0) {
+                json.append(",\n");
+            }
+            json.append("  {");
+            for (int k = 0; k < keys; k++) {
+                if (k > 0) {
+                    json.append(", ");
+                }
+                json.append('"').append("field").append(k).append("\": ");
+                switch (k % 6) {
+                case 0:
+                    json.append(i);
+                    break;
+                case 1:
+                    json.append('"').append(Long.toHexString(random.nextLong())).append('"');
+                    break;
+                case 2:
+                    json.append(random.nextBoolean());
+                    break;
+                case 3:
+                    json.append(random.nextInt(180000000) / 1000000.0 - 90);
+                    break;
+                case 4:
+                    json.append('[');
+                    for (int t = 0; t < 7; t++) {
+                        if (t > 0) {
+                            json.append(", ");
+                        }
+                        word(json, random);
+                    }
+                    json.append(']');
+                    break;
+                default:
+                    json.append('[');
+                    for (int f = 0; f < 3; f++) {
+                        if (f > 0) {
+                            json.append(", ");
+                        }
+                        json.append("{\"id\": ").append(f).append(", \"name\": ");
+                        word(json, random);
+                        json.append('}');
+                    }
+                    json.append(']');
+                }
+            }
+            json.append('}');
+        }
+        json.append("\n]\n");
+    }
+
+    private static final String[] WORDS = {
+        "aute", "esse", "amet", "ullamco", "minim", "sit", "sint", "commodo",
+        "laboris", "occaecat", "nulla", "labore", "officia", "eu", "anim", "est"
+    };
+
+    private static void word(StringBuilder json, Random random) {
+        json.append('"').append(WORDS[random.nextInt(WORDS.length)]).append('"');
+    }
+
+    private static boolean separator(StringBuilder json, boolean first) {
+        if (!first) {
+            json.append(", ");
+        }
+        return false;
+    }
+}
@@ -0,0 +1,114 @@
+package jsoncompressor.bench;
+
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import jsoncompressor.BenchStages;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Times each compressor stage on its own: tokenizing (Yylex and
+ * ByteLexer), parsing, compiling a parsed tree and writing a compiled
+ * array, or writing a parsed tree directly with HPackWriter. Every stage
+ * starts from the output of the previous one, prepared once per trial.
+ *
+ * <pre>
+ * java -jar bench/target/benchmarks.jar StageBenchmark -p shape=wide -p records=100000
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StageBenchmark {
+    @Param({"mixed", "single", "wide"})
+    public String shape;
+
+    @Param({"1000", "100000"})
+    public int records;
+
+    @Param({"8", "64"})
+    public int keys;
+
+    private Stages stages;
+    private byte[] json;
+    private Object program;
+    private Object compiled;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        stages = new BenchStages();
+        json = Corpus.generate(shape, records, keys);
+        program = stages.parse(json, true);
+        compiled = stages.compile(program);
+    }
+
+    @Benchmark
+    public int lexYylex() throws Exception {
+        return stages.lex(json, false);
+    }
+
+    @Benchmark
+    public int lexByteLexer() throws Exception {
+        return stages.lex(json, true);
+    }
+
+    @Benchmark
+    public Object parseYylex() throws Exception {
+        return stages.parse(json, false);
+    }
+
+    @Benchmark
+    public Object parseByteLexer() throws Exception {
+        return stages.parse(json, true);
+    }
+
+    @Benchmark
+    public Object compile() {
+        return stages.compile(program);
+    }
+
+    @Benchmark
+    public long write() throws Exception {
+        CountingOutputStream out = new CountingOutputStream();
+        stages.write(compiled, out);
+        return out.count;
+    }
+
+    /** Compile and write in one step, straight from the tree. */
+    @Benchmark
+    public long writeDirect() throws Exception {
+        CountingOutputStream out = new CountingOutputStream();
+        stages.writeDirect(program, out);
+        return out.count;
+    }
+
+    /** Discards what is written, keeping only the byte count. */
+    static final class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
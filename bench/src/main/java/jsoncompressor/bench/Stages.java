@@ -0,0 +1,26 @@
+package jsoncompressor.bench;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The compressor stages as seen by the benchmarks. The stages are
+ * package-private in jsoncompressor, so they are reached through this
+ * interface, implemented by jsoncompressor.BenchStages.
+ */
+public interface Stages {
+    /** Tokenizes the whole input and returns the token count. */
+    int lex(byte[] json, boolean byteLexer) throws Exception;
+
+    /** Parses the input into its Json tree. */
+    Object parse(byte[] json, boolean byteLexer) throws Exception;
+
+    /** Compiles a tree returned by parse into the [header, values...] array. */
+    Object compile(Object program);
+
+    /** Writes an array returned by compile to out. */
+    void write(Object compiled, OutputStream out) throws IOException;
+
+    /** Writes a tree returned by parse to out without compiling it first. */
+    void writeDirect(Object program, OutputStream out) throws IOException;
+}
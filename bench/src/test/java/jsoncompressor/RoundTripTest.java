@@ -0,0 +1,259 @@
+package jsoncompressor;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import org.json.simple.JSONValue;
+import org.junit.Test;
+
+// Compresses documents and expands them again with Decompressor. The
+// expected results spell out what the compressed form loses (numbers as
+// strings, objects under a key as the list of their values).
+public class RoundTripTest {
+
+    @Test
+    public void objectWhoseFirstValueIsAnObjectOfStrings() throws Exception {
+        assertRoundTrip("[{\"u\":{\"addr\":{\"city\":\"x\",\"zip\":\"y\"},\"n\":\"a\"}}]",
+                        "[{\"u\":[[\"x\",\"y\"],\"a\"]}]");
+        assertRoundTrip("[{\"k\":{\"a\":{\"p\":\"s\",\"q\":\"t\"}}}]",
+                        "[{\"k\":[[\"s\",\"t\"]]}]");
+    }
+
+    @Test
+    public void objectWhoseFirstValueIsEmpty() throws Exception {
+        assertRoundTrip("[{\"name\":{\"tags\":{},\"y\":{\"id\":1}}}]",
+                        "[{\"name\":[[],[\"1\"]]}]");
+    }
+
+    @Test
+    public void objectWhoseFirstValueIsNull() throws Exception {
+        assertRoundTrip("[{\"a\":{\"b\":null,\"c\":\"x\"}},{\"a\":{\"b\":null}}]",
+                        "[{\"a\":[null,\"x\"]},{\"a\":[null]}]");
+    }
+
+    @Test
+    public void nestedArrayAmongRecords() throws Exception {
+        assertRoundTrip("[{\"id\":1,\"user\":{\"name\":\"q\"},\"tags\":[\"a\"]},[[\"q\"],1]]",
+                        "[{\"id\":\"1\",\"user\":[\"q\"],\"tags\":[\"a\"]},[[\"q\"],\"1\"]]");
+        assertRoundTrip("[{\"a\":[{\"b\":1},[\"x\"]]}]",
+                        "[{\"a\":[{\"b\":\"1\"},[\"x\"]]}]");
+    }
+
+    @Test
+    public void nestedArraysWithoutRecords() throws Exception {
+        assertRoundTrip("[[1,[2]],[],\"x\"]", "[[\"1\",[\"2\"]],[],\"x\"]");
+    }
+
+    @Test
+    public void nestedArrayBesideRecordWithEnumeratedKey() throws Exception {
+        assertRoundTrip("[{\"note\":[{\"age\":1,\"id\":[\"red\",\"red\"]},[true]]}]",
+                        "[{\"note\":[{\"age\":\"1\",\"id\":[\"red\",\"red\"]},[true]]}]", 2);
+    }
+
+    @Test
+    public void nestedHeaderHoldingLiterals() throws Exception {
+        assertRoundTrip("[{\"a\":{\"b\":1}},{\"a\":\"x\"},{\"a\":{\"b\":[true]}}]",
+                        "[{\"a\":{\"b\":\"1\"}},{\"a\":\"x\"},{\"a\":{\"b\":[true]}}]", 2);
+    }
+
+    @Test
+    public void dictionaryHeaderAmongObjectValues() throws Exception {
+        String json = "[{\"name\":{\"tags\":[],\"id\":{\"age\":\"x\\\\y\",\"y\":-5}}}]";
+        KeyDictionary dictionary = dictionary(json);
+        String compressed = compress(json, 0, dictionary);
+        assertEquals("[[-1],[[[[]],[\"x\\\\y\",\"-5\"]]]]", compressed);
+        assertEquals(JSONValue.parse("[{\"name\":[[],[\"x\\\\y\",\"-5\"]]}]"),
+                     JSONValue.parse(expand(compressed, dictionary)));
+    }
+
+    @Test
+    public void dictionaryKeepsKeyOrder() throws Exception {
+        KeyDictionary dictionary = dictionary("[{\"a\":1,\"b\":1}]");
+        String json = "[{\"b\":1},{\"a\":2,\"b\":3}]";
+        assertEquals("[[1,0],[\"1\"],[\"3\",\"2\"]]", compress(json, 0, dictionary));
+        assertEquals("[[\"b\",\"a\"],[\"1\"],[\"3\",\"2\"]]", compress(json, 0, null));
+    }
+
+    @Test
+    public void deltaColumnsKeepNumberSpellings() throws Exception {
+        assertDeltaRoundTrip(new String[] { "1000.50", "1001.25", "-0.75", "0.00" }, true);
+        assertDeltaRoundTrip(new String[] { "1000", "1001", "-3", "0" }, true);
+        assertDeltaRoundTrip(new String[] { "1000", "1001.0", "1002", "1003" }, false);
+        assertDeltaRoundTrip(new String[] { "1000.5", "1001.50", "1002.5", "1003.5" }, false);
+        assertDeltaRoundTrip(new String[] { "1000", "1001", "007", "1003" }, false);
+        assertDeltaRoundTrip(new String[] { "1000", "1001", "-0", "1003" }, false);
+    }
+
+    @Test
+    public void columnarRecordsWithoutKeysStayRows() throws Exception {
+        StringBuilder json = new StringBuilder("[{}");
+        for (int i = 1; i < HPackWriter.MIN_COLUMNAR_ROWS; ++i) {
+            json.append(",{}");
+        }
+        json.append(']');
+        Compressor compressor = new Compressor();
+        compressor.setByteLexer(true);
+        compressor.setColumnar(true);
+        String compressed = new String(compressor.compress(json.toString().getBytes(StandardCharsets.UTF_8)),
+                                       StandardCharsets.UTF_8);
+        assertFalse(compressed, compressed.contains("\"columns\""));
+        assertEquals(JSONValue.parse(json.toString()), JSONValue.parse(expand(compressed)));
+    }
+
+    @Test
+    public void projectionSkipsNestedArrays() throws Exception {
+        assertEquals("[{\"a\":\"1\"},{\"a\":\"3\"}]", project("[{\"a\":1},[{\"a\":2}],{\"a\":3}]", "a"));
+        assertEquals("[{\"a\":null},{\"a\":null}]", project("[{},[1],{}]", "a"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsRecordLongerThanHeader() throws Exception {
+        expand("[[\"a\"],[\"x\",\"y\"]]");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsListThatIsNeitherRecordNorArray() throws Exception {
+        expand("[[],[\"x\"]]");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsRowUnderEnumeratedKey() throws Exception {
+        expand("[[{\"k\":{\"enum\":[\"a\"]}}],[[[\"a\"]]]]");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEnumIndexOutOfRange() throws Exception {
+        expand("[[{\"k\":{\"enum\":[\"a\"]}}],[1]]");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsColumnarBlockWithRowsButNoColumns() throws Exception {
+        expand("[[\"a\"],{\"rows\":2000000000,\"columns\":[]}]");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsColumnarBlockWithBadRowCount() throws Exception {
+        expand("[[\"a\"],{\"rows\":\"x\",\"columns\":[]}]");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsColumnarBlockWithBadDeltaColumn() throws Exception {
+        expand("[[\"a\"],{\"rows\":1,\"columns\":[{\"delta\":\"x\"}]}]");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsProjectedColumnarBlockWithRowsButNoColumns() throws Exception {
+        ProjectionReader.project(new StringReader("[[\"a\"],{\"rows\":2000000000,\"columns\":[]}]"),
+                                 new StringWriter(), Collections.singletonList("a"), null);
+    }
+
+    @Test(expected = EOFException.class)
+    public void rejectsBinaryArrayLongerThanInput() throws Exception {
+        readBinary(BinaryWriter.ARRAY, 0, 0xFF, 0xFF, 0xFF, 0xFF, 0x07, BinaryWriter.NULL);
+    }
+
+    @Test(expected = EOFException.class)
+    public void rejectsBinaryStringLongerThanInput() throws Exception {
+        readBinary(BinaryWriter.STRING, 0xFF, 0xFF, 0xFF, 0xFF, 0x07, 'x');
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsNegativeBinaryStringLength() throws Exception {
+        readBinary(BinaryWriter.STRING, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0x01);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsNegativeBinaryArrayCount() throws Exception {
+        readBinary(BinaryWriter.ARRAY, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0x01);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsNegativeBinaryStringReference() throws Exception {
+        readBinary(BinaryWriter.REF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0x01);
+    }
+
+    // BinaryReader on the magic and version followed by bytes
+    private static Object readBinary(int... bytes) throws Exception {
+        ByteArrayOutputStream in = new ByteArrayOutputStream();
+        in.write(BinaryWriter.MAGIC);
+        in.write(BinaryWriter.VERSION);
+        for (int b : bytes) {
+            in.write(b);
+        }
+        return new BinaryReader(new ByteArrayInputStream(in.toByteArray())).read();
+    }
+
+    private static void assertRoundTrip(String json, String expected) throws Exception {
+        assertRoundTrip(json, expected, 0);
+    }
+
+    // The output of the serial and the parallel writer at level, expanded
+    private static void assertRoundTrip(String json, String expected, int level) throws Exception {
+        Compressor compressor = new Compressor();
+        compressor.setByteLexer(true);
+        compressor.setLevel(level);
+        byte[] serial = compressor.compress(json.getBytes(StandardCharsets.UTF_8));
+        compressor.setThreads(2);
+        byte[] parallel = compressor.compress(json.getBytes(StandardCharsets.UTF_8));
+
+        String compressed = new String(serial, StandardCharsets.UTF_8);
+        assertEquals(compressed, new String(parallel, StandardCharsets.UTF_8));
+        assertEquals(compressed, JSONValue.parse(expected), JSONValue.parse(expand(compressed)));
+    }
+
+    // A columnar array of records holding these numbers, repeated to make
+    // enough rows, comes back with every number spelled the same
+    private static void assertDeltaRoundTrip(String[] numbers, boolean delta) throws Exception {
+        StringBuilder json = new StringBuilder("[");
+        StringBuilder expected = new StringBuilder("[");
+        for (int i = 0; i < HPackWriter.MIN_COLUMNAR_ROWS; ++i) {
+            String separator = i > 0 ? "," : "";
+            String number = numbers[i % numbers.length];
+            json.append(separator).append("{\"n\":").append(number).append('}');
+            expected.append(separator).append("{\"n\":\"").append(number).append("\"}");
+        }
+        json.append(']');
+        expected.append(']');
+
+        Compressor compressor = new Compressor();
+        compressor.setByteLexer(true);
+        compressor.setColumnar(true);
+        compressor.setDeltaEncoding(true);
+        String compressed = new String(compressor.compress(json.toString().getBytes(StandardCharsets.UTF_8)),
+                                       StandardCharsets.UTF_8);
+        assertEquals(compressed, delta, compressed.contains("\"delta\""));
+        assertEquals(compressed, JSONValue.parse(expected.toString()), JSONValue.parse(expand(compressed)));
+    }
+
+    private static String compress(String json, int level, KeyDictionary dictionary) throws Exception {
+        Compressor compressor = new Compressor();
+        compressor.setByteLexer(true);
+        compressor.setLevel(level);
+        compressor.setDictionary(dictionary);
+        return new String(compressor.compress(json.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8);
+    }
+
+    private static String project(String json, String path) throws Exception {
+        StringWriter out = new StringWriter();
+        ProjectionReader.project(new StringReader(compress(json, 0, null)), out,
+                                 Collections.singletonList(path), null);
+        return out.toString();
+    }
+
+    private static KeyDictionary dictionary(String json) throws Exception {
+        return KeyDictionary.train(Collections.singletonList(json.getBytes(StandardCharsets.UTF_8)),
+                                   KeyDictionary.DEFAULT_MAX_KEYS);
+    }
+
+    private static String expand(String compressed) throws Exception {
+        return expand(compressed, null);
+    }
+
+    private static String expand(String compressed, KeyDictionary dictionary) throws Exception {
+        StringWriter out = new StringWriter();
+        Decompressor.decompress(new StringReader(compressed), out, dictionary);
+        return out.toString();
+    }
+}
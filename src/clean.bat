@@ -1,2 +1,2 @@
 @echo off
-del *.class
\ No newline at end of file
+del jsoncompressor\*.class
\ No newline at end of file
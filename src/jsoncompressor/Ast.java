@@ -0,0 +1,511 @@
+package jsoncompressor;
+
+import java.io.*;
+import java.util.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+// Writes compiled output as UTF-8 through a large buffer, element by
+// element, so no String of the whole output is built. Errors are thrown
+// to the caller.
+class JsonWriter {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    public static void writeToFile(String fileName, Json program) throws IOException {
+        writeToFile(fileName, program, null);
+    }
+
+    // The file is written under a temporary name next to it and renamed
+    // once complete, so a failed write never leaves a truncated file.
+    // stats, if not null, gets the compile, serialize and write times.
+    public static void writeToFile(String fileName, Json program, CompressionStats stats) throws IOException {
+        Path target = Paths.get(fileName).toAbsolutePath();
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            OutputStream out = Files.newOutputStream(temp);
+            try {
+                write(program, out, stats);
+            }
+            finally {
+                out.close();
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // out is flushed but left open
+    public static void write(JSONArray json, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        json.writeJSONString(writer);
+        writer.flush();
+    }
+
+    // A program is written straight from the Ast by HPackWriter, or
+    // BinaryWriter
+    public static void write(Json program, OutputStream out, CompressionStats stats) throws IOException {
+        if (program.binary) {
+            long start = System.nanoTime();
+            BinaryWriter writer = new BinaryWriter(stats == null ? out : new TimedOutputStream(out, stats));
+            writer.writeJson(program);
+            writer.flush();
+            if (stats != null) {
+                stats.written(System.nanoTime() - start);
+            }
+            return;
+        }
+
+        long start = System.nanoTime();
+        HPackWriter writer = new HPackWriter(stats == null ? out : new TimedOutputStream(out, stats));
+        writer.setLevel(program.level);
+        writer.setDictionary(program.dictionary);
+        writer.setEnumLimit(program.enumLimit);
+        writer.setColumnar(program.columnar);
+        writer.setDeltaEncoding(program.delta);
+        writer.setSchemaCache(program.schemaCache);
+        writer.setThreads(program.threads);
+        writer.writeJson(program);
+        writer.flush();
+        if (stats != null) {
+            stats.compileNanos = writer.headerNanos();
+            stats.written(System.nanoTime() - start - stats.compileNanos);
+        }
+    }
+}
+
+class SymbolTable {
+    // each key gets a dense ordinal when it is first added, so index
+    // lookups are a single hash probe instead of a scan over the key set
+    private Map<String, Integer> ordinals;
+    private String[] keys;
+    private int size;
+
+    public SymbolTable() {
+        ordinals = new HashMap<String, Integer>();
+        keys = new String[8];
+        size = 0;
+    }
+
+    public SymbolTable(LinkedHashMap<String, Boolean> keyMap) {
+        this();
+        for(String k : keyMap.keySet()) {
+            addKey(k);
+        }
+    }
+
+    public void addKey(String key) {
+        if(ordinals.containsKey(key)) {
+            return;
+        }
+        if(size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+        }
+        ordinals.put(key, size);
+        keys[size++] = key;
+    }
+
+    public boolean contains(String key) {
+        return ordinals.containsKey(key);
+    }
+
+    public int indexOf(String key) {
+        Integer index = ordinals.get(key);
+        return index == null ? -1 : index;
+    }
+
+    // adds the keys of other that are not here yet, in other's order
+    public void addAll(SymbolTable other) {
+        for(int i = 0; i < other.size; ++i) {
+            addKey(other.keys[i]);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String keyAt(int index) {
+        return keys[index];
+    }
+
+    public JSONArray toJsonArray() {
+        JSONArray array = new JSONArray();
+        array.ensureCapacity(size);
+        for(int i = 0; i < size; ++i) {
+            array.add(keys[i]);
+        }
+
+        return array;
+    }
+}
+
+// **********************************************************************
+// Node lists built by the parser (array-backed, appended in source order)
+// **********************************************************************
+class JsonPairList extends ArrayList<JsonPair> {
+    private static final long serialVersionUID = 1L;
+}
+
+class JsonValueList extends ArrayList<JsonValue> {
+    private static final long serialVersionUID = 1L;
+}
+
+// **********************************************************************
+// Ast class (base class for all other kinds of nodes)
+// **********************************************************************
+abstract class Ast {
+    protected SymbolTable table;
+
+    public abstract Object compile();
+}
+
+class Json extends Ast {
+    public int threads = 1; // > 1 writes a root array on a ForkJoinPool, see HPackWriter
+    public int level = 0; // > 0 shares more through the headers, see Schema
+    public KeyDictionary dictionary; // header keys as ids, see KeyDictionary
+    public int enumLimit = Schema.NO_ENUM_LIMIT; // most distinct values enumerated under a key
+    public boolean columnar; // arrays of records as columns, see HPackWriter
+    public boolean delta; // numeric columns as differences
+    public boolean binary; // BinaryWriter instead of text
+    public SchemaCache schemaCache; // shared by documents, see SchemaCache
+    private Ast content;
+
+    public Json(JsonObject obj) {
+        content = obj;
+    }
+
+    public Json(JsonArray array) {
+        content = array;
+    }
+
+    public Ast content() {
+        return content;
+    }
+
+    // Compile to [header, values...]
+    public JSONArray compile() {
+        table = new SymbolTable();
+        content.table = table;
+
+        JSONArray result = new JSONArray();
+        Object compiledContent = content.compile();
+
+        //if(table.size() > 0) {
+            result.add(table.toJsonArray());
+        //}
+
+        if(content instanceof JsonArray) {
+            result.addAll((List)compiledContent);
+        }
+        else {
+            result.add(compiledContent);
+        }
+
+        return result;
+    }
+}
+
+// **********************************************************************
+// JsonObject
+// **********************************************************************
+class JsonObject extends Ast {
+    public JsonPairList pairList;
+
+    public JsonObject(JsonPairList pairList) {
+        this.pairList = pairList;
+    }
+
+    public JsonObject(JsonObjectValue objValue) {
+        this.pairList = objValue.obj.pairList;
+    }
+
+    public JSONArray compile() {
+        JSONArray values = new JSONArray();
+
+        for(int i = 0; i < pairList.size(); ++i) {
+            JsonPair pair = pairList.get(i);
+
+            table.addKey(pair.key);
+
+            pair.table = table;
+            Object compiledValue = pair.compile();
+
+            // every value goes to its key's column, missing keys are null
+            int pos = table.indexOf(pair.key);
+            while(values.size() < pos)
+                values.add(null);
+
+            if(pos < values.size())
+                values.set(pos, compiledValue);
+            else
+                values.add(compiledValue);
+
+        }
+
+        return values;
+        //System.out.println("Pairs = " + pairList.size());
+    }
+}
+
+// **********************************************************************
+// JsonPair
+// **********************************************************************
+class JsonPair extends Ast {
+    public String key;
+    public JsonValue value;
+
+    public JsonPair(String key, JsonValue value) {
+        this.key = key;
+        this.value = value;
+    }
+
+    public Object compile() {
+        value.table = new SymbolTable(); // new scope
+        Object compiledValue = value.compile();
+        if (value instanceof JsonObjectValue && needsMarker((JSONArray)compiledValue)) {
+            // see HPackWriter.needsMarker
+            ((JSONArray)compiledValue).add(0, null);
+        }
+        return compiledValue;
+    }
+
+    // true if the first value is null or a list of strings
+    private static boolean needsMarker(JSONArray values) {
+        if (values.isEmpty()) {
+            return false;
+        }
+        Object first = values.get(0);
+        if (first == null) {
+            return true;
+        }
+        if (!(first instanceof List)) {
+            return false;
+        }
+        for (Object item : (List)first) {
+            if (!(item instanceof String)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
+
+// **********************************************************************
+// JsonArray
+// **********************************************************************
+class JsonArray extends Ast {
+    public JsonValueList valueList;
+
+    public JsonArray(JsonValueList valueList) {
+        this.valueList = valueList;
+    }
+
+    public ArrayList<Object> compile() {
+        ArrayList<Object> complete = new ArrayList<Object>(valueList.size());
+
+        for(int i = 0; i < valueList.size(); ++i) {
+            JsonValue value = valueList.get(i);
+            value.table = table;
+
+            Object result = value.compile();
+
+            complete.add(result);
+        }
+        markNestedArrays(valueList, complete, table);
+
+        return complete;
+    }
+
+    // Among rows a nested array could be taken for a row, so once the
+    // array has keys its nested arrays become {"array": [...]}
+    @SuppressWarnings("unchecked")
+    static void markNestedArrays(JsonValueList values, List<Object> compiled, SymbolTable table) {
+        if (table.size() == 0) {
+            return;
+        }
+        for (int i = 0; i < values.size(); ++i) {
+            if (values.get(i) instanceof JsonArrayValue) {
+                JSONObject nested = new JSONObject();
+                nested.put("array", compiled.get(i));
+                compiled.set(i, nested);
+            }
+        }
+    }
+}
+
+// **********************************************************************
+// JsonValue
+// **********************************************************************
+abstract class JsonValue extends Ast {
+    protected String stringValue;
+}
+
+abstract class JsonBasicValue extends JsonValue {
+    private int lineNum;
+    private int charNum;
+    
+    public JsonBasicValue(int lineNum, int charNum) {
+        this.lineNum = lineNum;
+        this.charNum = charNum;
+    }
+    
+    public int getLine() {
+        return lineNum;
+    }
+    public int getChar() {
+        return charNum;
+    }
+}
+
+// A number is kept as the lexeme it was written as and written back
+// unchanged; it is only parsed when a value is needed (BinaryWriter)
+class NumberLit extends JsonBasicValue {
+    private String text;
+
+    public NumberLit(int lineNum, int charNum, String text) {
+        super(lineNum, charNum);
+        this.text = text;
+    }
+
+    // An integer that fits in a long, without a fraction or exponent
+    public boolean isLong() {
+        int start = text.charAt(0) == '-' || text.charAt(0) == '+' ? 1 : 0;
+        int digits = text.length() - start;
+        if (digits > 19) {
+            return false;
+        }
+        for (int i = start; i < text.length(); ++i) {
+            if (text.charAt(i) < '0' || text.charAt(i) > '9') {
+                return false;
+            }
+        }
+        if (digits < 19) {
+            return true;
+        }
+        try {
+            Long.parseLong(text);
+            return true;
+        } catch (NumberFormatException ex) {
+            return false;
+        }
+    }
+
+    public long longValue() {
+        return Long.parseLong(text);
+    }
+
+    public double value() {
+        return Double.parseDouble(text);
+    }
+
+    public String compile() {
+        return text;
+    }
+
+    public String toString() {
+        return text;
+    }
+}
+
+class StringLit extends JsonBasicValue {
+    private String strVal;
+
+    public StringLit(int lineNum, int charNum, String strVal) {
+        super(lineNum, charNum);
+        this.strVal = strVal;
+    }
+
+    public String str() {
+        return strVal;
+    }
+
+    public String compile() {
+        return toString();
+    }
+
+    public String toString() {
+        return strVal;
+    }
+}
+
+class BoolLit extends JsonBasicValue {
+    private boolean boolVal;
+
+    public BoolLit(int lineNum, int charNum, boolean val) {
+        super(lineNum, charNum);
+        this.boolVal = val;
+    }
+
+    public Boolean compile() {
+        return boolVal;
+    }
+
+    public String toString() {
+        return "" + boolVal;
+    }
+}
+
+class NullLit extends JsonBasicValue {
+    private Object val;
+
+    public NullLit(int lineNum, int charNum) {
+        super(lineNum, charNum);
+        this.val = null;
+    }
+
+    public String compile() {
+        return toString();
+    }
+
+    public String toString() {
+        return null;
+    }
+}
+
+class JsonObjectValue extends JsonValue {
+    public JsonObject obj;
+
+    public JsonObjectValue(JsonObject obj) {
+        this.obj = obj;
+    }
+
+    public JSONArray compile() {
+        obj.table = table;
+        return obj.compile();
+    }
+}
+
+class JsonArrayValue extends JsonValue {
+    public JsonArray array;
+
+    public JsonArrayValue(JsonArray array) {
+        this.array = array;
+    }
+
+    public ArrayList<Object> compile() {
+        //System.out.println(array.compile());
+        table = new SymbolTable();
+        array.table = table;
+
+        ArrayList<Object> compiledContent = array.compile();
+        ArrayList<Object> result = new ArrayList<Object>(compiledContent.size() + 1);
+
+        //if(table.size() > 0) {
+            result.add(table.toJsonArray());
+        //}
+
+        result.addAll(compiledContent);
+
+        return result;
+    }
+}
+
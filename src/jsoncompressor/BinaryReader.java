@@ -0,0 +1,177 @@
+package jsoncompressor;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONValue;
+
+// **********************************************************************
+// BinaryReader
+//
+// Reads what BinaryWriter writes back into the JSON it came from: arrays
+// as JSONArrays, objects as Maps in key order, integers as Longs and
+// other numbers as Doubles. Input that is not in that format, or ends
+// early, is an IOException.
+//
+// Counts and lengths come from the input, so nothing is allocated up
+// front for more than MAX_RESERVE elements or bytes; past that, lists
+// and strings grow as their contents are actually read, and a count
+// that is too large ends in an EOFException, not an OutOfMemoryError.
+// **********************************************************************
+public class BinaryReader {
+    private static final int MAX_RESERVE = 1 << 16;
+
+    private DataInputStream in;
+    private List<String> strings = new ArrayList<String>();
+
+    public BinaryReader(InputStream in) {
+        this.in = new DataInputStream(new BufferedInputStream(in));
+    }
+
+    // The root value: a List for an array, a Map for an object
+    public Object read() throws IOException {
+        byte[] magic = new byte[BinaryWriter.MAGIC.length];
+        in.readFully(magic);
+        if (!Arrays.equals(magic, BinaryWriter.MAGIC)) {
+            throw new IOException("not a binary hPack stream");
+        }
+        int version = in.readUnsignedByte();
+        if (version != BinaryWriter.VERSION) {
+            throw new IOException("unsupported binary hPack version " + version);
+        }
+        return readValue(in.readUnsignedByte());
+    }
+
+    // Writes the JSON that in was written from to out
+    public static void decompress(InputStream in, Writer out) throws IOException {
+        JSONValue.writeJSONString(new BinaryReader(in).read(), out);
+        out.flush();
+    }
+
+    private Object readValue(int tag) throws IOException {
+        switch (tag) {
+        case BinaryWriter.NULL:
+            return null;
+        case BinaryWriter.FALSE:
+            return Boolean.FALSE;
+        case BinaryWriter.TRUE:
+            return Boolean.TRUE;
+        case BinaryWriter.INT:
+            long zigzag = readVarint();
+            return (zigzag >>> 1) ^ -(zigzag & 1);
+        case BinaryWriter.DOUBLE:
+            return in.readDouble();
+        case BinaryWriter.STRING:
+        case BinaryWriter.REF:
+            return readString(tag);
+        case BinaryWriter.ARRAY:
+            return readArray();
+        case BinaryWriter.OBJECT:
+            List<String> keys = readHeader();
+            expect(BinaryWriter.ROW);
+            return readRow(keys);
+        default:
+            throw new IOException("bad tag " + tag);
+        }
+    }
+
+    private JSONArray readArray() throws IOException {
+        List<String> keys = readHeader();
+        int count = readCount();
+        JSONArray array = new JSONArray();
+        array.ensureCapacity(Math.min(count, MAX_RESERVE));
+        for (int i = 0; i < count; ++i) {
+            int tag = in.readUnsignedByte();
+            array.add(tag == BinaryWriter.ROW ? readRow(keys) : readValue(tag));
+        }
+        return array;
+    }
+
+    private List<String> readHeader() throws IOException {
+        int count = readCount();
+        List<String> keys = new ArrayList<String>(Math.min(count, MAX_RESERVE));
+        for (int i = 0; i < count; ++i) {
+            keys.add(readString(in.readUnsignedByte()));
+        }
+        return keys;
+    }
+
+    private Map<String, Object> readRow(List<String> keys) throws IOException {
+        int count = readCount();
+        if (count > keys.size()) {
+            throw new IOException("row has " + count + " values but the header has " + keys.size() + " keys");
+        }
+        Map<String, Object> record = new LinkedHashMap<String, Object>();
+        for (int i = 0; i < count; ++i) {
+            int tag = in.readUnsignedByte();
+            if (tag != BinaryWriter.ABSENT) {
+                record.put(keys.get(i), readValue(tag));
+            }
+        }
+        return record;
+    }
+
+    private String readString(int tag) throws IOException {
+        if (tag == BinaryWriter.REF) {
+            long index = readVarint();
+            if (index < 0 || index >= strings.size()) {
+                throw new IOException("bad string reference " + index);
+            }
+            return strings.get((int)index);
+        }
+        if (tag != BinaryWriter.STRING) {
+            throw new IOException("expected a string, found tag " + tag);
+        }
+        String s = new String(readBytes(readCount()), StandardCharsets.UTF_8);
+        if (strings.size() < BinaryWriter.MAX_STRINGS) {
+            strings.add(s);
+        }
+        return s;
+    }
+
+    // length bytes, read MAX_RESERVE at a time for long ones
+    private byte[] readBytes(int length) throws IOException {
+        if (length <= MAX_RESERVE) {
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            return bytes;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(MAX_RESERVE);
+        byte[] step = new byte[MAX_RESERVE];
+        for (int left = length; left > 0; left -= step.length) {
+            int n = Math.min(left, step.length);
+            in.readFully(step, 0, n);
+            bytes.write(step, 0, n);
+        }
+        return bytes.toByteArray();
+    }
+
+    private void expect(int tag) throws IOException {
+        int found = in.readUnsignedByte();
+        if (found != tag) {
+            throw new IOException("expected tag " + tag + ", found " + found);
+        }
+    }
+
+    private int readCount() throws IOException {
+        long count = readVarint();
+        // a ten byte varint can set the sign bit
+        if (count < 0 || count > Integer.MAX_VALUE) {
+            throw new IOException("bad count " + count);
+        }
+        return (int)count;
+    }
+
+    private long readVarint() throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            v |= (long)(b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return v;
+            }
+        }
+        throw new IOException("varint too long");
+    }
+}
@@ -0,0 +1,223 @@
+package jsoncompressor;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+// **********************************************************************
+// BinaryWriter
+//
+// The level 0 structure (headers and rows) in a compact binary form for
+// programs on both ends, read back by BinaryReader. Nothing is quoted or
+// escaped and numbers are not turned into strings:
+//
+//  file    "HPK" VERSION value
+//  value   NULL | FALSE | TRUE
+//          INT zigzag varint            an integer that fits in a long
+//          DOUBLE 8 bytes, big-endian   any other number
+//          STRING varint length, UTF-8  added to the string table
+//          REF varint index             a string from the table
+//          ARRAY header varint count element...
+//          OBJECT header row            the value of a pair, or the root
+//  header  varint count (STRING | REF)...
+//  element ROW varint count (ABSENT | value)...  an object in the array
+//          value                                  anything else
+//
+// Every string, key or value, goes into the table the first time it is
+// written (until it holds MAX_STRINGS), so a repeated one costs a REF.
+// Unlike the text form, objects that are the value of a pair keep their
+// keys and a missing key is ABSENT rather than null, so the structure
+// comes back as it was, except that a repeated key keeps its last value.
+// Numbers come back as values, not as they were spelled: an integer as
+// its digits (007 as 7) and any other number as a double, so 1.0 stays
+// 1.0 but 1e2 becomes 100.0, 10.50 becomes 10.5 and -0 becomes -0.0.
+// **********************************************************************
+class BinaryWriter implements Flushable {
+    static final byte[] MAGIC = { 'H', 'P', 'K' };
+    static final int VERSION = 1;
+    static final int MAX_STRINGS = 1 << 16;
+
+    static final int NULL = 0;
+    static final int FALSE = 1;
+    static final int TRUE = 2;
+    static final int INT = 3;
+    static final int DOUBLE = 4;
+    static final int STRING = 5;
+    static final int REF = 6;
+    static final int ARRAY = 7;
+    static final int OBJECT = 8;
+    static final int ROW = 9;
+    static final int ABSENT = 10;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private OutputStream out;
+    private byte[] buf = new byte[BUFFER_SIZE];
+    private int pos;
+    private Map<String, Integer> strings = new HashMap<String, Integer>();
+
+    public BinaryWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    public void writeJson(Json program) throws IOException {
+        writeBytes(MAGIC, 0, MAGIC.length);
+        writeByte(VERSION);
+        Ast content = program.content();
+        if (content instanceof JsonArray) {
+            writeArray((JsonArray)content);
+        }
+        else {
+            writeObject((JsonObject)content);
+        }
+    }
+
+    private void writeArray(JsonArray array) throws IOException {
+        SymbolTable keys = HPackWriter.keysOf(array);
+        writeByte(ARRAY);
+        writeHeader(keys);
+        writeVarint(array.valueList.size());
+        for (int i = 0; i < array.valueList.size(); ++i) {
+            JsonValue value = array.valueList.get(i);
+            if (value instanceof JsonObjectValue) {
+                writeRow(((JsonObjectValue)value).obj, keys);
+            }
+            else {
+                writeValue(value);
+            }
+        }
+    }
+
+    private void writeObject(JsonObject obj) throws IOException {
+        SymbolTable keys = HPackWriter.keysOf(obj);
+        writeByte(OBJECT);
+        writeHeader(keys);
+        writeRow(obj, keys);
+    }
+
+    private void writeHeader(SymbolTable keys) throws IOException {
+        writeVarint(keys.size());
+        for (int i = 0; i < keys.size(); ++i) {
+            writeString(keys.keyAt(i));
+        }
+    }
+
+    // The values of obj in the columns of keys, up to its last column
+    private void writeRow(JsonObject obj, SymbolTable keys) throws IOException {
+        JsonPairList pairs = obj.pairList;
+        JsonValue[] columns = new JsonValue[keys.size()];
+        int size = 0;
+        for (int i = 0; i < pairs.size(); ++i) {
+            JsonPair pair = pairs.get(i);
+            int column = keys.indexOf(pair.key);
+            columns[column] = pair.value;
+            size = Math.max(size, column + 1);
+        }
+
+        writeByte(ROW);
+        writeVarint(size);
+        for (int i = 0; i < size; ++i) {
+            if (columns[i] == null) {
+                writeByte(ABSENT);
+            }
+            else {
+                writeValue(columns[i]);
+            }
+        }
+    }
+
+    private void writeValue(JsonValue value) throws IOException {
+        if (value instanceof StringLit) {
+            writeString(((StringLit)value).str());
+        }
+        else if (value instanceof NumberLit) {
+            writeNumber((NumberLit)value);
+        }
+        else if (value instanceof BoolLit) {
+            writeByte(((BoolLit)value).compile() ? TRUE : FALSE);
+        }
+        else if (value instanceof NullLit) {
+            writeByte(NULL);
+        }
+        else if (value instanceof JsonArrayValue) {
+            writeArray(((JsonArrayValue)value).array);
+        }
+        else {
+            writeObject(((JsonObjectValue)value).obj);
+        }
+    }
+
+    private void writeNumber(NumberLit number) throws IOException {
+        // -0 is not an integer
+        if (number.isLong() && !(number.toString().startsWith("-") && number.longValue() == 0)) {
+            long l = number.longValue();
+            writeByte(INT);
+            writeVarint((l << 1) ^ (l >> 63));
+            return;
+        }
+        long bits = Double.doubleToLongBits(number.value());
+        writeByte(DOUBLE);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            writeByte((int)(bits >>> shift));
+        }
+    }
+
+    private void writeString(String s) throws IOException {
+        Integer index = strings.get(s);
+        if (index != null) {
+            writeByte(REF);
+            writeVarint(index);
+            return;
+        }
+        if (strings.size() < MAX_STRINGS) {
+            strings.put(s, strings.size());
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeByte(STRING);
+        writeVarint(bytes.length);
+        writeBytes(bytes, 0, bytes.length);
+    }
+
+    // ******************************************************************
+    // Output
+    // ******************************************************************
+
+    // 7 bits at a time, low bits first, the high bit set on all but the last
+    private void writeVarint(long v) throws IOException {
+        while ((v & ~0x7FL) != 0) {
+            writeByte((int)((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        writeByte((int)v);
+    }
+
+    private void writeByte(int b) throws IOException {
+        if (pos == buf.length) {
+            drain();
+        }
+        buf[pos++] = (byte)b;
+    }
+
+    private void writeBytes(byte[] bytes, int offset, int length) throws IOException {
+        if (buf.length - pos < length) {
+            drain();
+            if (length > buf.length) {
+                out.write(bytes, offset, length);
+                return;
+            }
+        }
+        System.arraycopy(bytes, offset, buf, pos, length);
+        pos += length;
+    }
+
+    private void drain() throws IOException {
+        out.write(buf, 0, pos);
+        pos = 0;
+    }
+
+    // out is flushed but left open
+    public void flush() throws IOException {
+        drain();
+        out.flush();
+    }
+}
@@ -0,0 +1,245 @@
+package jsoncompressor;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import org.json.simple.JSONValue;
+import org.json.simple.parser.ParseException;
+
+// **********************************************************************
+// BlockReader
+//
+// Reads a container written by BlockWriter. Only the index is read when
+// it is opened; a block is read and expanded when its records are asked
+// for, and the blocks of a range can be expanded on several threads.
+// Reads go through positional FileChannel reads, so one BlockReader can
+// be used by any number of threads. Records come back as Decompressor or
+// BinaryReader give them, depending on how the blocks were written.
+// **********************************************************************
+public class BlockReader implements Closeable {
+    private FileChannel channel;
+    private KeyDictionary dictionary;
+    private boolean binary;
+    // per block
+    private long[] offsets;
+    private int[] lengths;
+    private long[] firsts;
+    private int[] counts;
+    private long records;
+
+    public BlockReader(File file) throws IOException {
+        this(file, null);
+    }
+
+    public BlockReader(File file, KeyDictionary dictionary) throws IOException {
+        this.dictionary = dictionary;
+        channel = new RandomAccessFile(file, "r").getChannel();
+        try {
+            readIndex();
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    public int blockCount() {
+        return offsets.length;
+    }
+
+    public long recordCount() {
+        return records;
+    }
+
+    // The records of one block
+    @SuppressWarnings("unchecked")
+    public List<Object> readBlock(int block) throws IOException {
+        byte[] bytes = new byte[lengths[block]];
+        readFully(ByteBuffer.wrap(bytes), offsets[block]);
+        if (binary) {
+            return (List<Object>)new BinaryReader(new ByteArrayInputStream(bytes)).read();
+        }
+
+        List<Object> items = new ArrayList<Object>(counts[block]);
+        try {
+            Reader reader = new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8);
+            Decompressor decompressor = new Decompressor(reader, dictionary);
+            while (decompressor.hasNext()) {
+                items.add(decompressor.next());
+            }
+        } catch (ParseException ex) {
+            throw new IOException("block " + block + " is not a compressed document: " + ex, ex);
+        }
+        return items;
+    }
+
+    // Records [from, to), reading the blocks they are in on this many threads
+    public List<Object> read(long from, long to, int threads) throws IOException {
+        if (from < 0 || to > records || from > to) {
+            throw new IndexOutOfBoundsException("records " + from + " to " + to + " of " + records);
+        }
+        List<Object> items = new ArrayList<Object>((int)Math.min(to - from, Integer.MAX_VALUE));
+        if (from == to) {
+            return items;
+        }
+        int first = blockOf(from);
+        int last = blockOf(to - 1);
+        List<List<Object>> blocks = readBlocks(first, last + 1, threads);
+        for (int i = 0; i < blocks.size(); ++i) {
+            List<Object> block = blocks.get(i);
+            long start = firsts[first + i];
+            int lo = (int)Math.max(0, from - start);
+            int hi = (int)Math.min(block.size(), to - start);
+            items.addAll(block.subList(lo, hi));
+        }
+        return items;
+    }
+
+    public Object read(long record) throws IOException {
+        return read(record, record + 1, 1).get(0);
+    }
+
+    // Writes records [from, to) as a JSON array, holding the blocks of at
+    // most one round of threads at a time
+    public void decompress(long from, long to, int threads, Writer out) throws IOException {
+        if (from < 0 || to > records || from > to) {
+            throw new IndexOutOfBoundsException("records " + from + " to " + to + " of " + records);
+        }
+        out.write('[');
+        boolean first = true;
+        long next = from;
+        while (next < to) {
+            int last = Math.min(blockOf(next) + threads, offsets.length) - 1;
+            long end = Math.min(to, firsts[last] + counts[last]);
+            for (Object item : read(next, end, threads)) {
+                if (!first) {
+                    out.write(',');
+                }
+                JSONValue.writeJSONString(item, out);
+                first = false;
+            }
+            next = end;
+        }
+        out.write(']');
+        out.flush();
+    }
+
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // The block holding record, by binary search on the first records
+    private int blockOf(long record) {
+        int i = Arrays.binarySearch(firsts, record);
+        return i >= 0 ? i : -i - 2;
+    }
+
+    private List<List<Object>> readBlocks(int from, int to, int threads) throws IOException {
+        List<List<Object>> blocks = new ArrayList<List<Object>>(to - from);
+        if (threads <= 1 || to - from == 1) {
+            for (int i = from; i < to; ++i) {
+                blocks.add(readBlock(i));
+            }
+            return blocks;
+        }
+
+        List<Callable<List<Object>>> tasks = new ArrayList<Callable<List<Object>>>(to - from);
+        for (int i = from; i < to; ++i) {
+            final int block = i;
+            tasks.add(new Callable<List<Object>>() {
+                public List<Object> call() throws IOException {
+                    return readBlock(block);
+                }
+            });
+        }
+        ForkJoinPool pool = new ForkJoinPool(Math.min(threads, to - from));
+        try {
+            for (Future<List<Object>> result : pool.invokeAll(tasks)) {
+                blocks.add(result.get());
+            }
+        } catch (InterruptedException ex) {
+            throw new InterruptedIOException("interrupted while reading blocks");
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException)ex.getCause();
+            }
+            throw new IOException("Exception occured while reading blocks: " + ex.getCause(), ex.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        return blocks;
+    }
+
+    private void readIndex() throws IOException {
+        long size = channel.size();
+        int headerSize = BlockWriter.MAGIC.length + 2;
+        if (size < headerSize + 4 + BlockWriter.TRAILER_SIZE) {
+            throw new IOException("not a block container");
+        }
+        ByteBuffer header = ByteBuffer.allocate(headerSize);
+        readFully(header, 0);
+        ByteBuffer trailer = ByteBuffer.allocate(BlockWriter.TRAILER_SIZE);
+        readFully(trailer, size - BlockWriter.TRAILER_SIZE);
+        if (!hasMagic(header, 0) || !hasMagic(trailer, 8)) {
+            throw new IOException("not a block container");
+        }
+        int version = header.get(BlockWriter.MAGIC.length) & 0xFF;
+        if (version != BlockWriter.VERSION) {
+            throw new IOException("unsupported block container version " + version);
+        }
+        int flags = header.get(BlockWriter.MAGIC.length + 1);
+        binary = (flags & BlockWriter.BINARY) != 0;
+        if ((flags & BlockWriter.DICTIONARY) != 0 && dictionary == null) {
+            throw new IOException("the blocks were written with a key dictionary");
+        }
+
+        long indexOffset = trailer.getLong(0);
+        long indexSize = size - BlockWriter.TRAILER_SIZE - indexOffset;
+        if (indexOffset < headerSize || indexSize < 4 || indexSize > Integer.MAX_VALUE) {
+            throw new IOException("bad index offset " + indexOffset);
+        }
+        ByteBuffer index = ByteBuffer.allocate((int)indexSize);
+        readFully(index, indexOffset);
+        index.flip();
+        int count = index.getInt();
+        if (count < 0 || (long)count * 24 != indexSize - 4) {
+            throw new IOException("bad index of " + count + " blocks");
+        }
+
+        offsets = new long[count];
+        lengths = new int[count];
+        firsts = new long[count];
+        counts = new int[count];
+        for (int i = 0; i < count; ++i) {
+            offsets[i] = index.getLong();
+            lengths[i] = index.getInt();
+            firsts[i] = index.getLong();
+            counts[i] = index.getInt();
+            if (offsets[i] < headerSize || lengths[i] < 0 || offsets[i] + lengths[i] > indexOffset
+                || firsts[i] != records || counts[i] < 1) {
+                throw new IOException("bad index entry for block " + i);
+            }
+            records += counts[i];
+        }
+    }
+
+    private static boolean hasMagic(ByteBuffer buf, int at) {
+        for (int i = 0; i < BlockWriter.MAGIC.length; ++i) {
+            if (buf.get(at + i) != BlockWriter.MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void readFully(ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            int n = channel.read(buf, position + buf.position());
+            if (n < 0) {
+                throw new EOFException("block container ends early");
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package jsoncompressor;
+
+import java.io.*;
+import java.util.*;
+import java_cup.runtime.*;
+
+// **********************************************************************
+// BlockWriter
+//
+// Writes a root array as a container of blocks: every blockSize elements
+// are written as a complete document of their own ([header, rows...], or
+// the binary form), so each block can be read without the others. An
+// index at the end records where each block is and which records it
+// holds, and BlockReader uses it to go straight to a record or to read
+// blocks on several threads:
+//
+//  file     "HPB" VERSION flags block... index trailer
+//  flags    BINARY if the blocks are BinaryWriter documents, DICTIONARY
+//           if their keys need the KeyDictionary they were written with
+//  index    int count, then per block: long offset, int length,
+//           long first record, int record count
+//  trailer  long offset of the index, "HPB"
+//
+// A root object is one block holding one record. Only one block is held
+// in memory at a time.
+// **********************************************************************
+class BlockWriter {
+    static final byte[] MAGIC = { 'H', 'P', 'B' };
+    static final int VERSION = 1;
+    static final int BINARY = 1;
+    static final int DICTIONARY = 2;
+    // bytes after the index
+    static final int TRAILER_SIZE = 8 + 3;
+
+    private Compressor compressor;
+    private int blockSize;
+    private int flags;
+    private DataOutputStream out;
+    private ByteArrayOutputStream block = new ByteArrayOutputStream(1 << 16);
+    private List<long[]> index = new ArrayList<long[]>();
+    private long records;
+    private long offset;
+
+    public BlockWriter(Compressor compressor, int blockSize, int flags) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("block size must be at least 1: " + blockSize);
+        }
+        this.compressor = compressor;
+        this.blockSize = blockSize;
+        this.flags = flags;
+    }
+
+    public void compress(java_cup.runtime.Scanner scanner, Errors errors, OutputStream output)
+            throws Exception {
+        out = new DataOutputStream(new BufferedOutputStream(output, 1 << 16));
+        out.write(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(flags);
+        offset = MAGIC.length + 2;
+
+        ValueParser parser = new ValueParser(scanner, errors);
+        JsonValueList batch = new JsonValueList();
+        Symbol tok = parser.next();
+        if (tok.sym == sym.LCURLY) {
+            batch.add(new JsonObjectValue(parser.parseObject()));
+            parser.expect(parser.next(), sym.EOF);
+            writeBlock(batch);
+            finish();
+            return;
+        }
+
+        parser.expect(tok, sym.LSQBRACKET);
+        tok = parser.next();
+        if (tok.sym != sym.RSQBRACKET) {
+            while (true) {
+                batch.add(parser.parseValue(tok));
+                if (batch.size() == blockSize) {
+                    writeBlock(batch);
+                    batch = new JsonValueList();
+                }
+                tok = parser.next();
+                if (tok.sym == sym.RSQBRACKET) {
+                    break;
+                }
+                parser.expect(tok, sym.COMMA);
+                tok = parser.next();
+            }
+        }
+        parser.expect(parser.next(), sym.EOF);
+        if (!batch.isEmpty()) {
+            writeBlock(batch);
+        }
+        finish();
+    }
+
+    private void writeBlock(JsonValueList values) throws IOException {
+        block.reset();
+        compressor.writeBlock(values, block);
+        index.add(new long[] { offset, block.size(), records, values.size() });
+        block.writeTo(out);
+        offset += block.size();
+        records += values.size();
+    }
+
+    private void finish() throws IOException {
+        long indexOffset = offset;
+        out.writeInt(index.size());
+        for (long[] entry : index) {
+            out.writeLong(entry[0]);
+            out.writeInt((int)entry[1]);
+            out.writeLong(entry[2]);
+            out.writeInt((int)entry[3]);
+        }
+        out.writeLong(indexOffset);
+        out.write(MAGIC);
+        out.flush();
+    }
+}
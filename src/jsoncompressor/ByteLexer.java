@@ -0,0 +1,372 @@
+package jsoncompressor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java_cup.runtime.*;
+
+// **********************************************************************
+// ByteLexer
+//
+// A hand-written alternative to Yylex that scans UTF-8 bytes in a single
+// pass and returns the same tokens to the parser. Only JSON tokens are
+// recognized: no operators and no comments. Punctuation tokens share one
+// TokenVal per kind; literals still get their own TokenVal because the
+// parser reads them after the next token has been scanned. The Symbol
+// itself cannot be reused since the parser keeps it on its stack.
+//
+// Over a MappedInput the bytes are scanned in place one window at a
+// time. A token that runs off the end of a window is scanned again from
+// its first byte after the next window has been mapped starting there.
+// **********************************************************************
+class ByteLexer implements java_cup.runtime.Scanner {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final Charset LATIN1 = Charset.forName("ISO-8859-1");
+
+    private Errors errors;
+    private ByteBuffer buf;
+    private int pos;
+    private int end;
+
+    // set when buf is one window of a larger file
+    private MappedInput input;
+    // set when a scan needed bytes past the end of a window
+    private boolean truncated;
+
+    // position of the next byte, 1-based like Yylex reports it
+    private int line = 1;
+    private int charNum = 1;
+
+    private TokenVal lcurly = new TokenVal(0, 0);
+    private TokenVal rcurly = new TokenVal(0, 0);
+    private TokenVal lsqbracket = new TokenVal(0, 0);
+    private TokenVal rsqbracket = new TokenVal(0, 0);
+    private TokenVal comma = new TokenVal(0, 0);
+    private TokenVal colon = new TokenVal(0, 0);
+
+    // reused by every string literal that needs unescaping
+    private StringBuilder strBuf = new StringBuilder();
+
+    // Recently seen short ASCII strings by hash of their bytes, so keys and
+    // repeated values like "green" or "male" come back as the same String
+    // instead of a new one each time; a slot is overwritten on collision
+    private static final int INTERN_SLOTS = 1 << 12;
+    private static final int INTERN_MAX_LENGTH = 32;
+    private String[] interned = new String[INTERN_SLOTS];
+
+    public ByteLexer(byte[] input, Errors errors) {
+        this(ByteBuffer.wrap(input), errors);
+    }
+
+    public ByteLexer(MappedInput input, Errors errors) throws IOException {
+        this(input.map(0), errors);
+        this.input = input;
+    }
+
+    public ByteLexer(ByteBuffer input, Errors errors) {
+        this.errors = errors;
+        buf = input;
+        pos = input.position();
+        end = input.limit();
+
+        // skip a UTF-8 byte order mark
+        if (end - pos >= 3 && buf.get(pos) == (byte)0xEF
+                && buf.get(pos + 1) == (byte)0xBB && buf.get(pos + 2) == (byte)0xBF) {
+            pos += 3;
+        }
+    }
+
+    public Symbol next_token() throws IOException {
+        while (true) {
+            if (pos >= end) {
+                if (input == null || input.isLast(end)) {
+                    return new Symbol(sym.EOF);
+                }
+                remap(pos);
+                continue;
+            }
+
+            int mark = pos;
+            int markLine = line;
+            int markChar = charNum;
+            Symbol s = scan();
+            if (truncated) {
+                truncated = false;
+                if (mark == 0) {
+                    throw new IOException("token at byte " + input.base()
+                                          + " is longer than the mapping window");
+                }
+                pos = mark;
+                line = markLine;
+                charNum = markChar;
+                remap(mark);
+                continue;
+            }
+            if (s != null) {
+                return s;
+            }
+        }
+    }
+
+    // Scans one token, or one run of input that produces no token (null)
+    private Symbol scan() {
+        byte b = buf.get(pos);
+        switch (b) {
+        case ' ':
+        case '\t':
+            pos++;
+            charNum++;
+            return null;
+        case '\n':
+            pos++;
+            line++;
+            charNum = 1;
+            return null;
+        case '\r':
+            pos++;
+            if (!has(pos) || buf.get(pos) != '\n') {
+                line++;
+            }
+            charNum = 1;
+            return null;
+        case '{':
+            return punctuation(sym.LCURLY, lcurly);
+        case '}':
+            return punctuation(sym.RCURLY, rcurly);
+        case '[':
+            return punctuation(sym.LSQBRACKET, lsqbracket);
+        case ']':
+            return punctuation(sym.RSQBRACKET, rsqbracket);
+        case ',':
+            return punctuation(sym.COMMA, comma);
+        case ':':
+            return punctuation(sym.COLON, colon);
+        case '"':
+            return string();
+        case 't':
+            if (matches("true")) {
+                return keyword(sym.TRUELITERAL, new BoolTokenVal(line, charNum, true), 4);
+            }
+            illegal();
+            return null;
+        case 'f':
+            if (matches("false")) {
+                return keyword(sym.FALSELITERAL, new BoolTokenVal(line, charNum, false), 5);
+            }
+            illegal();
+            return null;
+        case 'n':
+            if (matches("null")) {
+                return keyword(sym.NULLLITERAL, new NullTokenVal(line, charNum), 4);
+            }
+            illegal();
+            return null;
+        default:
+            if (b == '-' || b == '+' || (b >= '0' && b <= '9')) {
+                Symbol s = number();
+                if (s != null) {
+                    return s;
+                }
+            }
+            illegal();
+            return null;
+        }
+    }
+
+    // maps the next window so that it starts at offset from of this one
+    private void remap(int from) throws IOException {
+        buf = input.map(input.base() + from);
+        pos = 0;
+        end = buf.limit();
+    }
+
+    // true if p is inside the window; marks the scan truncated if the
+    // file continues past the window
+    private boolean has(int p) {
+        if (p < end) {
+            return true;
+        }
+        if (input != null && !input.isLast(end)) {
+            truncated = true;
+        }
+        return false;
+    }
+
+    private Symbol punctuation(int kind, TokenVal val) {
+        val.linenum = line;
+        val.charnum = charNum;
+        pos++;
+        charNum++;
+        return new Symbol(kind, val);
+    }
+
+    private Symbol keyword(int kind, TokenVal val, int length) {
+        pos += length;
+        charNum += length;
+        return new Symbol(kind, val);
+    }
+
+    private boolean matches(String word) {
+        for (int i = 0; i < word.length(); ++i) {
+            if (!has(pos + i) || buf.get(pos + i) != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // [+-]?[0-9]+(\.[0-9]+)?([eE][+-]?[0-9]+)?, the same lexeme Yylex
+    // accepts, kept as it is written; repeated ones share a String
+    private Symbol number() {
+        int start = pos;
+        int p = pos;
+        if (buf.get(p) == '-' || buf.get(p) == '+') {
+            p++;
+        }
+        int digitsStart = p;
+        p = digits(p);
+        if (p == digitsStart) {
+            return null;
+        }
+        if (has(p) && buf.get(p) == '.' && isDigit(p + 1)) {
+            p = digits(p + 1);
+        }
+        if (has(p) && (buf.get(p) == 'e' || buf.get(p) == 'E')) {
+            int exponent = p + 1;
+            if (has(exponent) && (buf.get(exponent) == '-' || buf.get(exponent) == '+')) {
+                exponent++;
+            }
+            if (isDigit(exponent)) {
+                p = digits(exponent);
+            }
+        }
+        if (truncated) {
+            return null;
+        }
+
+        Symbol s = new Symbol(sym.NUMBERLITERAL, new NumberTokenVal(line, charNum, intern(start, p - start)));
+        charNum += p - start;
+        pos = p;
+        return s;
+    }
+
+    private int digits(int p) {
+        while (isDigit(p)) {
+            p++;
+        }
+        return p;
+    }
+
+    private boolean isDigit(int p) {
+        return has(p) && buf.get(p) >= '0' && buf.get(p) <= '9';
+    }
+
+    // \"([^\\\"]|\\.)*\", escapes expanded by StringTokenVal.checkEscapedChars
+    private Symbol string() {
+        int start = pos;
+        int startLine = line;
+        int startChar = charNum;
+        int p = pos + 1;
+        int chars = 1;
+        boolean escaped = false;
+        while (has(p)) {
+            byte b = buf.get(p);
+            if (b == '"') {
+                break;
+            }
+            if (b == '\\' && has(p + 1)) {
+                escaped = true;
+                p += 2;
+                chars += 2;
+                continue;
+            }
+            if (b == '\n') {
+                line++;
+            }
+            if ((b & 0xC0) != 0x80) {
+                chars++;
+            }
+            p++;
+        }
+
+        if (truncated) {
+            return null;
+        }
+        if (p >= end) {
+            // unterminated, report the quote like any other illegal character
+            line = startLine;
+            illegal();
+            return null;
+        }
+
+        pos = p + 1;
+        charNum += chars + 1;
+
+        if (!escaped) {
+            String str = intern(start + 1, p - start - 1);
+            return new Symbol(sym.STRINGLITERAL, new StringTokenVal(startLine, startChar, str));
+        }
+        try {
+            String str = StringTokenVal.checkEscapedChars(decode(start, p - start + 1, UTF8), strBuf);
+            return new Symbol(sym.STRINGLITERAL, new StringTokenVal(startLine, startChar, str));
+        } catch (BadEscapedChar e) {
+            errors.fatal(startLine, startChar, "ignoring string literal with bad escaped character");
+            return null;
+        }
+    }
+
+    private void illegal() {
+        if (truncated) {
+            return;
+        }
+        int start = pos;
+        pos++;
+        while (has(pos) && (buf.get(pos) & 0xC0) == 0x80) {
+            pos++;
+        }
+        if (truncated) {
+            return;
+        }
+        errors.fatal(line, charNum, "ignoring illegal character: " + decode(start, pos - start, UTF8));
+        charNum++;
+    }
+
+    private String intern(int offset, int length) {
+        if (length > INTERN_MAX_LENGTH) {
+            return decode(offset, length, UTF8);
+        }
+        int hash = 0;
+        for (int i = offset; i < offset + length; ++i) {
+            byte b = buf.get(i);
+            if (b < 0) {
+                return decode(offset, length, UTF8);
+            }
+            hash = 31 * hash + b;
+        }
+        int slot = (hash ^ (hash >>> 12)) & (INTERN_SLOTS - 1);
+        String str = interned[slot];
+        if (str != null && str.length() == length) {
+            int i = 0;
+            while (i < length && str.charAt(i) == buf.get(offset + i)) {
+                i++;
+            }
+            if (i == length) {
+                return str;
+            }
+        }
+        str = decode(offset, length, LATIN1);
+        interned[slot] = str;
+        return str;
+    }
+
+    private String decode(int offset, int length, Charset charset) {
+        if (buf.hasArray()) {
+            return new String(buf.array(), buf.arrayOffset() + offset, length, charset);
+        }
+        byte[] bytes = new byte[length];
+        ByteBuffer slice = buf.duplicate();
+        slice.position(offset);
+        slice.get(bytes);
+        return new String(bytes, charset);
+    }
+}
@@ -0,0 +1,269 @@
+package jsoncompressor;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java_cup.runtime.*;
+import org.json.simple.JSONValue;
+
+// **********************************************************************
+// CompressionStats
+//
+// Numbers from one compression run: wall time per stage, sizes, token
+// and key counts, and bytes allocated by the calling thread. Lexing runs
+// inside the parser, so lex time is the time spent in the scanner and
+// parse time is the rest of the parse; it is estimated from a sample of
+// the tokens, see TimedScanner. Likewise serialize time is the time spent
+// producing output text and write time the time spent in the output
+// stream. Compile time is the pass over the root elements that builds
+// the root header; the headers of nested arrays are built as they are
+// written and count as serialize time.
+// Allocations on other threads (-parallel) are not counted.
+// **********************************************************************
+public class CompressionStats {
+    public long lexNanos;
+    public long parseNanos;
+    public long compileNanos;
+    public long serializeNanos;
+    public long writeNanos;
+
+    // -1 if the input size is unknown
+    public long bytesIn = -1;
+    public long bytesOut;
+    public long tokens;
+
+    // keys in the root header, tables that got at least one key, and the
+    // largest and total number of keys over those tables
+    public int rootKeys;
+    public int keyTables;
+    public int maxKeys;
+    public long totalKeys;
+
+    // -1 if the JVM cannot report per-thread allocation
+    public long allocatedBytes = -1;
+
+    private long allocStart = -1;
+
+    public long totalNanos() {
+        return lexNanos + parseNanos + compileNanos + serializeNanos + writeNanos;
+    }
+
+    // output size over input size, 0 if the input size is unknown
+    public double ratio() {
+        return bytesIn > 0 ? (double)bytesOut / bytesIn : 0;
+    }
+
+    // ******************************************************************
+    // Recording
+    // ******************************************************************
+    void startAllocation() {
+        allocStart = threadAllocatedBytes();
+    }
+
+    void stopAllocation() {
+        long now = threadAllocatedBytes();
+        if (allocStart >= 0 && now >= 0) {
+            allocatedBytes = now - allocStart;
+        }
+    }
+
+    // the parse took parseWall nanoseconds including the time in the
+    // scanner, which is an estimate and so may come out above it on small
+    // inputs
+    void parsed(long parseWall) {
+        lexNanos = Math.min(lexNanos, parseWall);
+        parseNanos = parseWall - lexNanos;
+    }
+
+    // the write took writeWall nanoseconds including the time in the stream
+    void written(long writeWall) {
+        serializeNanos = writeWall - writeNanos;
+    }
+
+    // Counts the key tables of a program: one per array, for the objects
+    // in it, and one per object that is not in an array
+    void countTables(Json program) {
+        LinkedList<Object> pending = new LinkedList<Object>();
+        Ast content = program.content();
+        if (content instanceof JsonArray) {
+            rootKeys = HPackWriter.keysOf((JsonArray)content).size();
+        }
+        else {
+            rootKeys = HPackWriter.keysOf((JsonObject)content).size();
+        }
+        pending.push(content);
+
+        while (!pending.isEmpty()) {
+            Object node = pending.pop();
+            if (node instanceof JsonArrayValue) {
+                node = ((JsonArrayValue)node).array;
+            }
+            else if (node instanceof JsonObjectValue) {
+                node = ((JsonObjectValue)node).obj;
+            }
+
+            if (node instanceof JsonArray) {
+                JsonArray array = (JsonArray)node;
+                count(HPackWriter.keysOf(array));
+                for (JsonValue value : array.valueList) {
+                    // laid out by the table of the array
+                    if (value instanceof JsonObjectValue) {
+                        pending.push(((JsonObjectValue)value).obj.pairList);
+                    }
+                    else {
+                        pending.push(value);
+                    }
+                }
+            }
+            else if (node instanceof JsonObject) {
+                count(HPackWriter.keysOf((JsonObject)node));
+                pending.push(((JsonObject)node).pairList);
+            }
+            else if (node instanceof JsonPairList) {
+                for (JsonPair pair : (JsonPairList)node) {
+                    pending.push(pair.value);
+                }
+            }
+        }
+    }
+
+    private void count(SymbolTable table) {
+        if (table.size() > 0) {
+            keyTables++;
+            totalKeys += table.size();
+            maxKeys = Math.max(maxKeys, table.size());
+        }
+    }
+
+    private static long threadAllocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)bean;
+            if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+                return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    // ******************************************************************
+    // Reports
+    // ******************************************************************
+
+    // one JSON object, times in milliseconds
+    public String toJSONString() {
+        Map<String, Object> report = new LinkedHashMap<String, Object>();
+        report.put("lexMillis", millis(lexNanos));
+        report.put("parseMillis", millis(parseNanos));
+        report.put("compileMillis", millis(compileNanos));
+        report.put("serializeMillis", millis(serializeNanos));
+        report.put("writeMillis", millis(writeNanos));
+        report.put("totalMillis", millis(totalNanos()));
+        report.put("bytesIn", bytesIn);
+        report.put("bytesOut", bytesOut);
+        report.put("ratio", ratio());
+        report.put("tokens", tokens);
+        report.put("rootKeys", rootKeys);
+        report.put("keyTables", keyTables);
+        report.put("maxKeys", maxKeys);
+        report.put("totalKeys", totalKeys);
+        report.put("allocatedBytes", allocatedBytes);
+        return JSONValue.toJSONString(report);
+    }
+
+    public String toString() {
+        return String.format(Locale.ROOT,
+            "lex %.1f ms, parse %.1f ms, compile %.1f ms, serialize %.1f ms, write %.1f ms%n"
+            + "%d bytes in, %d bytes out (ratio %.3f), %d tokens%n"
+            + "%d root keys, %d key tables (max %d keys, %d in total), %d bytes allocated",
+            millis(lexNanos), millis(parseNanos), millis(compileNanos),
+            millis(serializeNanos), millis(writeNanos),
+            bytesIn, bytesOut, ratio(), tokens,
+            rootKeys, keyTables, maxKeys, totalKeys, allocatedBytes);
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
+
+// Counts the tokens a scanner hands to the parser and times a sample of
+// them. A pair of nanoTime calls costs about as much as lexing a short
+// token, so timing every token would add about that much again to the
+// lex time. The strides between samples vary, so that records with a
+// fixed number of tokens do not have the same token sampled every time.
+class TimedScanner implements java_cup.runtime.Scanner {
+    // mean stride is about half this
+    private static final int MAX_STRIDE = 32;
+
+    private java_cup.runtime.Scanner scanner;
+    private CompressionStats stats;
+    private long calls;
+    private long samples;
+    private long sampledNanos;
+    private int untilSample = 1;
+    private int seed = 0x2545F491;
+
+    TimedScanner(java_cup.runtime.Scanner scanner, CompressionStats stats) {
+        this.scanner = scanner;
+        this.stats = stats;
+    }
+
+    public Symbol next_token() throws Exception {
+        Symbol s;
+        if (--untilSample == 0) {
+            long start = System.nanoTime();
+            s = scanner.next_token();
+            sampledNanos += System.nanoTime() - start;
+            samples++;
+            // xorshift
+            seed ^= seed << 13;
+            seed ^= seed >>> 17;
+            seed ^= seed << 5;
+            untilSample = 1 + (seed & (MAX_STRIDE - 1));
+        }
+        else {
+            s = scanner.next_token();
+        }
+        calls++;
+        if (s.sym != sym.EOF) {
+            stats.tokens++;
+        }
+        return s;
+    }
+
+    // Sets the lex time of stats to the estimate for all the calls so far
+    void finish() {
+        stats.lexNanos = samples == 0 ? 0 : (long)((double)sampledNanos / samples * calls);
+    }
+}
+
+// Times and counts the bytes written to a stream
+class TimedOutputStream extends FilterOutputStream {
+    private CompressionStats stats;
+
+    TimedOutputStream(OutputStream out, CompressionStats stats) {
+        super(out);
+        this.stats = stats;
+    }
+
+    public void write(int b) throws IOException {
+        long start = System.nanoTime();
+        out.write(b);
+        stats.writeNanos += System.nanoTime() - start;
+        stats.bytesOut++;
+    }
+
+    public void write(byte[] b, int off, int len) throws IOException {
+        long start = System.nanoTime();
+        out.write(b, off, len);
+        stats.writeNanos += System.nanoTime() - start;
+        stats.bytesOut += len;
+    }
+
+    public void flush() throws IOException {
+        long start = System.nanoTime();
+        out.flush();
+        stats.writeNanos += System.nanoTime() - start;
+    }
+}
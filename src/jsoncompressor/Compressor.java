@@ -0,0 +1,317 @@
+package jsoncompressor;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java_cup.runtime.*;
+
+// **********************************************************************
+// Compressor
+//
+// Library entry point: compresses JSON from a stream, reader or byte
+// array straight into a stream or byte array, without touching the file
+// system. An instance only holds its settings, so one Compressor can be
+// shared by any number of threads; every call gets its own Errors,
+// scanner and parser.
+// **********************************************************************
+public class Compressor {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private boolean byteLexer = false;
+    private int threads = 1;
+    private int level = 0;
+    private KeyDictionary dictionary;
+    private int enumLimit = Schema.NO_ENUM_LIMIT;
+    private boolean columnar = false;
+    private boolean delta = false;
+    private boolean binary = false;
+    private boolean pipelined = false;
+    private int schemaCacheSize = SchemaCache.DEFAULT_CAPACITY;
+    private volatile SchemaCache schemaCache = new SchemaCache(schemaCacheSize);
+
+    // scan byte input with ByteLexer instead of Yylex
+    public void setByteLexer(boolean byteLexer) {
+        this.byteLexer = byteLexer;
+    }
+
+    // write the rows of a root array on this many threads
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    // 0 to Schema.MAX_LEVEL, see Schema
+    public void setLevel(int level) {
+        if (level < 0 || level > Schema.MAX_LEVEL) {
+            throw new IllegalArgumentException("level must be 0 to " + Schema.MAX_LEVEL + ": " + level);
+        }
+        this.level = level;
+    }
+
+    // write header keys as ids into this dictionary; the output can only
+    // be read back with the same dictionary
+    public void setDictionary(KeyDictionary dictionary) {
+        this.dictionary = dictionary;
+        setSchemaCacheSize(schemaCacheSize);
+    }
+
+    // at levels 2 and 3, enumerate no key with more distinct values than
+    // this; high-cardinality keys like ids or names are written as they are
+    public void setEnumLimit(int enumLimit) {
+        if (enumLimit < 1) {
+            throw new IllegalArgumentException("enum limit must be at least 1: " + enumLimit);
+        }
+        this.enumLimit = enumLimit;
+    }
+
+    // write arrays of at least HPackWriter.MIN_COLUMNAR_ROWS objects as one
+    // array per key instead of one per object
+    public void setColumnar(boolean columnar) {
+        this.columnar = columnar;
+    }
+
+    // in columnar mode, write a column of numbers as its first value and
+    // the differences between neighbours where that is shorter
+    public void setDeltaEncoding(boolean delta) {
+        this.delta = delta;
+    }
+
+    // write the binary form (see BinaryWriter) instead of JSON text; it
+    // has the level 0 structure, so level, enum limit, columnar mode and
+    // dictionary do not apply
+    public void setBinary(boolean binary) {
+        this.binary = binary;
+    }
+
+    // scan, parse and write on three threads at once, see
+    // PipelinedCompressor; level 0 text only. On a syntax error the output
+    // may already be partly written.
+    public void setPipelined(boolean pipelined) {
+        this.pipelined = pipelined;
+    }
+
+    // remember the header of up to this many shapes of root objects, so
+    // documents of a shape seen before skip building it; 0 turns it off.
+    // Starts out at SchemaCache.DEFAULT_CAPACITY.
+    public void setSchemaCacheSize(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("schema cache size must not be negative: " + size);
+        }
+        schemaCacheSize = size;
+        schemaCache = size == 0 ? null : new SchemaCache(size);
+    }
+
+    public void compress(InputStream in, OutputStream out) throws IOException, SyntaxError {
+        if (byteLexer) {
+            compress(readAll(in), out);
+            return;
+        }
+        compress(new InputStreamReader(in, UTF8), out);
+    }
+
+    // Same as compress(in, out), filling in stats. The input is read into
+    // memory first so that its size is known.
+    public void compress(InputStream in, OutputStream out, CompressionStats stats)
+            throws IOException, SyntaxError {
+        compress(readAll(in), out, stats);
+    }
+
+    public void compress(Reader in, OutputStream out) throws IOException, SyntaxError {
+        Errors errors = new Errors(null);
+        run(new Yylex(new BufferedReader(in), errors), errors, out, null);
+    }
+
+    public void compress(byte[] in, OutputStream out) throws IOException, SyntaxError {
+        compress(in, out, null);
+    }
+
+    public void compress(byte[] in, OutputStream out, CompressionStats stats)
+            throws IOException, SyntaxError {
+        Errors errors = new Errors(null);
+        if (stats != null) {
+            stats.bytesIn = in.length;
+        }
+        run(scanner(in, errors), errors, out, stats);
+    }
+
+    public byte[] compress(byte[] in) throws IOException, SyntaxError {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(in.length / 2);
+        compress(in, out);
+        return out.toByteArray();
+    }
+
+    public byte[] compress(InputStream in) throws IOException, SyntaxError {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        compress(in, out);
+        return out.toByteArray();
+    }
+
+    public byte[] compress(Reader in) throws IOException, SyntaxError {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        compress(in, out);
+        return out.toByteArray();
+    }
+
+    // Compresses newline-delimited JSON, one value per line, into a block
+    // per batchSize values, see LineCompressor. With maxDelayMillis above
+    // 0 a batch is also written once its first line has waited that long.
+    // Blocks are lines of text, so not in binary or pipelined mode.
+    public void compressLines(InputStream in, OutputStream out, int batchSize, long maxDelayMillis)
+            throws IOException, SyntaxError {
+        if (binary || pipelined) {
+            throw new IllegalStateException("lines are compressed to text, one block per line");
+        }
+        new LineCompressor(this, batchSize, maxDelayMillis).compress(in, out);
+    }
+
+    // One value of newline-delimited JSON; errors are reported at lineNumber
+    JsonValue parseLine(byte[] line, int lineNumber) throws IOException, SyntaxError {
+        Errors errors = new Errors(null);
+        ValueParser parser = new ValueParser(scanner(line, errors), errors);
+        JsonValue value;
+        try {
+            value = parser.parseValue(parser.next());
+            parser.expect(parser.next(), sym.EOF);
+        } catch (SyntaxError ex) {
+            throw new SyntaxError(lineNumber, ex.getChar(), "Syntax error");
+        } catch (IOException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new IOException("Exception occured during parse of line " + lineNumber + ": " + ex, ex);
+        }
+        if (errors.fatalError) {
+            throw new SyntaxError(lineNumber, 0, "Confused by earlier errors: " + errors.messages().get(0));
+        }
+        return value;
+    }
+
+    // Splits a root array into blocks of blockSize elements, each written
+    // as a document of its own, and adds an index of where they are, see
+    // BlockWriter; BlockReader reads them back in any order
+    public void compressBlocks(InputStream in, OutputStream out, int blockSize)
+            throws IOException, SyntaxError {
+        if (pipelined) {
+            throw new IllegalStateException("blocks are written on the calling thread");
+        }
+        Errors errors = new Errors(null);
+        java_cup.runtime.Scanner scanner = byteLexer
+            ? new ByteLexer(readAll(in), errors)
+            : new Yylex(new BufferedReader(new InputStreamReader(in, UTF8)), errors);
+        int flags = (binary ? BlockWriter.BINARY : 0) | (dictionary != null ? BlockWriter.DICTIONARY : 0);
+        BlockWriter writer = new BlockWriter(this, blockSize, flags);
+        try {
+            writer.compress(scanner, errors, out);
+        } catch (SyntaxError | IOException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new IOException("Exception occured during parse: " + ex, ex);
+        }
+        if (errors.fatalError) {
+            throw new SyntaxError(0, 0, "Confused by earlier errors: " + errors.messages().get(0));
+        }
+    }
+
+    // The document [header, rows...] of values, as set up for this instance
+    void writeBlock(JsonValueList values, OutputStream out) throws IOException {
+        Json program = new Json(new JsonArray(values));
+        configure(program);
+        JsonWriter.write(program, out, null);
+    }
+
+    private java_cup.runtime.Scanner scanner(byte[] in, Errors errors) {
+        if (byteLexer) {
+            return new ByteLexer(in, errors);
+        }
+        return new Yylex(new InputStreamReader(new ByteArrayInputStream(in), UTF8), errors);
+    }
+
+    private void configure(Json program) {
+        program.threads = threads;
+        program.level = level;
+        program.dictionary = dictionary;
+        program.enumLimit = enumLimit;
+        program.columnar = columnar;
+        program.delta = delta;
+        program.binary = binary;
+        program.schemaCache = schemaCache;
+    }
+
+    // Parses, compiles and writes; any reported error fails the whole call
+    private void run(java_cup.runtime.Scanner scanner, Errors errors, OutputStream out,
+                     CompressionStats stats) throws IOException, SyntaxError {
+        if (pipelined) {
+            runPipelined(scanner, errors, out);
+            return;
+        }
+        if (stats != null) {
+            stats.startAllocation();
+        }
+
+        Json program = parseStrict(scanner, errors, stats);
+        configure(program);
+        JsonWriter.write(program, out, stats);
+
+        if (stats != null) {
+            stats.stopAllocation();
+            stats.countTables(program);
+        }
+    }
+
+    private void runPipelined(java_cup.runtime.Scanner scanner, Errors errors, OutputStream out)
+            throws IOException, SyntaxError {
+        if (level > 0 || dictionary != null || columnar || binary) {
+            throw new IllegalStateException("pipelined mode only writes level 0 text");
+        }
+        try {
+            new PipelinedCompressor(scanner, errors).compress(out);
+        } catch (SyntaxError | IOException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new IOException("Exception occured during parse: " + ex, ex);
+        }
+        if (errors.fatalError) {
+            throw new SyntaxError(0, 0, "Confused by earlier errors: " + errors.messages().get(0));
+        }
+    }
+
+    // Same as parse, but any reported error fails the parse
+    static Json parseStrict(java_cup.runtime.Scanner scanner, Errors errors, CompressionStats stats)
+            throws IOException, SyntaxError {
+        Json program;
+        try {
+            program = parse(scanner, errors, stats);
+        } catch (SyntaxError | IOException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new IOException("Exception occured during parse: " + ex, ex);
+        }
+
+        if (errors.fatalError) {
+            throw new SyntaxError(0, 0, "Confused by earlier errors: " + errors.messages().get(0));
+        }
+        return program;
+    }
+
+    // Runs the parser, timing the scanner and the parser into stats
+    // unless it is null
+    static Json parse(java_cup.runtime.Scanner scanner, Errors errors, CompressionStats stats)
+            throws Exception {
+        if (stats == null) {
+            return (Json) new parser(scanner, errors).parse().value;
+        }
+        long start = System.nanoTime();
+        TimedScanner timed = new TimedScanner(scanner, stats);
+        Json program = (Json) new parser(timed, errors).parse().value;
+        timed.finish();
+        stats.parsed(System.nanoTime() - start);
+        return program;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buf = new byte[1 << 16];
+        int n;
+        while ((n = in.read(buf)) != -1) {
+            bytes.write(buf, 0, n);
+        }
+        return bytes.toByteArray();
+    }
+}
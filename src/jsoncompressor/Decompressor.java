@@ -0,0 +1,510 @@
+package jsoncompressor;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.util.*;
+import org.json.simple.JSONValue;
+import org.json.simple.parser.ContentHandler;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+// **********************************************************************
+// Decompressor
+//
+// Expands the output of Json.compile back into plain JSON. The root is
+// read as [header, element, element, ...] and elements are handed out
+// one at a time, so a consumer can iterate records without holding the
+// whole file.
+//
+// The compressed form does not record everything, so the result differs
+// from the original input in a few ways:
+//  - a root object comes back as an array holding that object
+//  - numbers come back as strings, spelled as they were in the input
+//  - a key missing from a record comes back as null if a later key of
+//    the same record is present
+//  - an object that is the value of a pair has no header of its own, so
+//    it comes back as the array of its values, unless it was written
+//    above level 0 and there are no arrays under the same key
+//
+// A list where a value is expected is a compiled array if it starts with
+// a header, and otherwise the values of an object, after a null marker
+// if there is one. Among the rows of an array a nested array is written
+// as {"array": [...]}. Input that does not fit this is rejected with an
+// IllegalArgumentException rather than guessed at.
+//
+// Headers written above level 0 (see Schema) are read too: a key can be
+// {"key": [nested header]} or {"key": {"enum": [values]}}, where a record
+// holds an index, or an array of indexes for an array. Output written
+// with a KeyDictionary needs the same dictionary here; its headers hold
+// ids in place of keys, or are [-n] for the first n keys of it.
+//
+// Columnar blocks {"rows": n, "columns": [...]} (see HPackWriter) expand
+// to their n records, with every key of the header in each of them.
+// **********************************************************************
+public class Decompressor {
+    private Reader reader;
+    private JSONParser parser;
+    private ElementReader elements;
+    private List<?> header;
+    private KeyDictionary dictionary;
+    // expanded elements not handed out yet
+    private Iterator<Object> pending = Collections.emptyIterator();
+
+    public Decompressor(Reader reader) throws IOException, ParseException {
+        this(reader, null);
+    }
+
+    public Decompressor(Reader reader, KeyDictionary dictionary) throws IOException, ParseException {
+        this.reader = reader;
+        this.dictionary = dictionary;
+        parser = new JSONParser();
+        elements = new ElementReader();
+
+        parser.parse(reader, elements, false);
+        Object first = elements.hasElement() ? elements.element() : null;
+        if (!isHeader(first)) {
+            throw new ParseException(ParseException.ERROR_UNEXPECTED_TOKEN);
+        }
+        header = resolve(first);
+    }
+
+    // Only expands values read by something else, see ProjectionReader
+    Decompressor(KeyDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    public List<?> header() {
+        return header;
+    }
+
+    public boolean hasNext() throws IOException, ParseException {
+        while (!pending.hasNext()) {
+            if (!elements.hasElement() && !elements.isFinished()) {
+                parser.parse(reader, elements, true);
+            }
+            if (!elements.hasElement()) {
+                return false;
+            }
+            Object element = elements.element();
+            if (isColumnar(element)) {
+                pending = expandColumns((Map<?, ?>)element, header).iterator();
+            }
+            else {
+                pending = Collections.singletonList(expandElement(element, header)).iterator();
+            }
+        }
+        return true;
+    }
+
+    // the next element of the root array, as a Map (record), List or literal
+    public Object next() throws IOException, ParseException {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return pending.next();
+    }
+
+    // Writes the expanded root array to out, one element at a time
+    public static void decompress(Reader in, Writer out) throws IOException, ParseException {
+        decompress(in, out, null);
+    }
+
+    public static void decompress(Reader in, Writer out, KeyDictionary dictionary)
+            throws IOException, ParseException {
+        Decompressor decompressor = new Decompressor(in, dictionary);
+
+        out.write('[');
+        boolean first = true;
+        while (decompressor.hasNext()) {
+            if (!first) {
+                out.write(',');
+            }
+            JSONValue.writeJSONString(decompressor.next(), out);
+            first = false;
+        }
+        out.write(']');
+        out.flush();
+    }
+
+    // Writes the records of blocks written by Compressor.compressLines,
+    // one per line, as newline-delimited JSON
+    public static void decompressLines(BufferedReader in, Writer out, KeyDictionary dictionary)
+            throws IOException, ParseException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            Decompressor decompressor = new Decompressor(new StringReader(line), dictionary);
+            while (decompressor.hasNext()) {
+                JSONValue.writeJSONString(decompressor.next(), out);
+                out.write('\n');
+            }
+        }
+        out.flush();
+    }
+
+    // ******************************************************************
+    // Expansion
+    // ******************************************************************
+
+    // An element of an array with the given header: a record laid out by
+    // the header, a nested array or a literal. Under a header with keys
+    // every list is a record and a nested array is {"array": [...]};
+    // without keys the only record is the empty one.
+    private Object expandElement(Object item, List<?> header) {
+        if (item instanceof Map) {
+            Object nested = ((Map<?, ?>)item).get("array");
+            if (((Map<?, ?>)item).size() != 1 || !(nested instanceof List) || !isCompiledArray((List<?>)nested)) {
+                throw new IllegalArgumentException("not an element of an array: " + item);
+            }
+            return expandArray((List<?>)nested);
+        }
+        if (!(item instanceof List)) {
+            return item;
+        }
+        List<?> list = (List<?>)item;
+        if (header.isEmpty() && !list.isEmpty()) {
+            if (!isCompiledArray(list)) {
+                throw new IllegalArgumentException("not an element of an array: " + item);
+            }
+            return expandArray(list);
+        }
+        return expandRecord(list, header);
+    }
+
+    // A value inside a record: a compiled array, an object compiled
+    // without a header (null in front if its first value is null or a
+    // list of strings, see HPackWriter), or a literal
+    private Object expandValue(Object item) {
+        if (item instanceof Map) {
+            throw new IllegalArgumentException("not a value: " + item);
+        }
+        if (!(item instanceof List)) {
+            return item;
+        }
+        List<?> list = (List<?>)item;
+        if (isCompiledArray(list)) {
+            return expandArray(list);
+        }
+        int start = !list.isEmpty() && list.get(0) == null ? 1 : 0;
+        List<Object> values = new ArrayList<Object>(list.size() - start);
+        for (int i = start; i < list.size(); ++i) {
+            values.add(expandValue(list.get(i)));
+        }
+        return values;
+    }
+
+    private List<Object> expandArray(List<?> compiled) {
+        List<?> header = resolve(compiled.get(0));
+        List<Object> array = new ArrayList<Object>(compiled.size() - 1);
+        for (int i = 1; i < compiled.size(); ++i) {
+            if (isColumnar(compiled.get(i))) {
+                array.addAll(expandColumns((Map<?, ?>)compiled.get(i), header));
+                continue;
+            }
+            array.add(expandElement(compiled.get(i), header));
+        }
+        return array;
+    }
+
+    private Map<String, Object> expandRecord(List<?> values, List<?> header) {
+        if (values.size() > header.size()) {
+            throw new IllegalArgumentException("record has " + values.size()
+                + " values but the header has " + header.size() + " keys");
+        }
+        Map<String, Object> record = new LinkedHashMap<String, Object>();
+        for (int i = 0; i < values.size(); ++i) {
+            record.put(keyName(header.get(i)), expandField(header.get(i), values.get(i)));
+        }
+        return record;
+    }
+
+    // The value under a header entry in a record, expanded. What the
+    // entry is decides what the value may be: indexes for an enumerated
+    // key, a row or a literal for a nested header.
+    Object expandField(Object key, Object value) {
+        if (key instanceof String) {
+            return expandValue(value);
+        }
+
+        Map<?, ?> entry = (Map<?, ?>)key;
+        Object shared = entry.size() == 1 ? entry.values().iterator().next() : null;
+        if (shared instanceof Map && ((Map<?, ?>)shared).get("enum") instanceof List) {
+            List<?> enumValues = (List<?>)((Map<?, ?>)shared).get("enum");
+            if (value == null) {
+                return null;
+            }
+            if (value instanceof List) {
+                // an array of enumerated elements
+                List<Object> array = new ArrayList<Object>();
+                for (Object index : (List<?>)value) {
+                    array.add(enumValue(enumValues, index));
+                }
+                return array;
+            }
+            return enumValue(enumValues, value);
+        }
+        if (shared == null || !isHeader(shared)) {
+            throw new IllegalArgumentException("not a header entry: " + key);
+        }
+        // a row of the nested header, or a literal
+        if (value instanceof List) {
+            return expandRecord((List<?>)value, resolve(shared));
+        }
+        if (value instanceof Map) {
+            throw new IllegalArgumentException("not a row: " + value);
+        }
+        return value;
+    }
+
+    private static Object enumValue(List<?> enumValues, Object index) {
+        boolean integer = index instanceof Long || index instanceof Integer;
+        if (!integer || ((Number)index).longValue() < 0 || ((Number)index).longValue() >= enumValues.size()) {
+            throw new IllegalArgumentException("not an index into " + enumValues + ": " + index);
+        }
+        return enumValues.get(((Number)index).intValue());
+    }
+
+    // The key of a header entry: "key", {"key": [...]} or {"key": {...}}
+    static String keyName(Object key) {
+        if (key instanceof String) {
+            return (String)key;
+        }
+        return (String)((Map<?, ?>)key).keySet().iterator().next();
+    }
+
+    private static boolean isColumnar(Object item) {
+        return item instanceof Map && ((Map<?, ?>)item).get("columns") instanceof List;
+    }
+
+    // The records of a columnar block, rebuilt as rows. Every column has
+    // to hold rows values, and a block with rows has to have a column, so
+    // no more records are built than the input holds values for.
+    private List<Object> expandColumns(Map<?, ?> block, List<?> header) {
+        Object rowCount = block.get("rows");
+        Object blockColumns = block.get("columns");
+        if (!isInteger(rowCount) || ((Number)rowCount).longValue() < 0 || !(blockColumns instanceof List)) {
+            throw new IllegalArgumentException("not a columnar block: " + block);
+        }
+        long rows = ((Number)rowCount).longValue();
+        List<?> columnList = (List<?>)blockColumns;
+        if (columnList.size() > header.size()) {
+            throw new IllegalArgumentException("block has " + columnList.size()
+                + " columns but the header has " + header.size() + " keys");
+        }
+        if (columnList.isEmpty() && rows > 0) {
+            throw new IllegalArgumentException("block has " + rows + " rows but no columns");
+        }
+        List<List<?>> columns = new ArrayList<List<?>>(columnList.size());
+        for (int c = 0; c < columnList.size(); ++c) {
+            Object column = columnList.get(c);
+            if (column instanceof Map) {
+                column = undelta((Map<?, ?>)column);
+            }
+            if (!(column instanceof List) || ((List<?>)column).size() != rows) {
+                throw new IllegalArgumentException("column " + c + " is not a list of " + rows + " values");
+            }
+            columns.add((List<?>)column);
+        }
+
+        int size = columns.isEmpty() ? 0 : columns.get(0).size();
+        List<Object> records = new ArrayList<Object>(size);
+        for (int r = 0; r < size; ++r) {
+            List<Object> values = new ArrayList<Object>(columns.size());
+            for (List<?> column : columns) {
+                values.add(column.get(r));
+            }
+            records.add(expandRecord(values, header));
+        }
+        return records;
+    }
+
+    // {"delta": [first, differences...], "scale": n} back to the numbers,
+    // written as strings like every other number. The writer only delta
+    // encodes numbers that come back spelled the same way, with n digits
+    // after the point.
+    static List<String> undelta(Map<?, ?> column) {
+        Object deltas = column.get("delta");
+        Object scale = column.get("scale");
+        boolean goodScale = scale == null
+            || (isInteger(scale) && ((Number)scale).longValue() >= 0 && ((Number)scale).longValue() <= Integer.MAX_VALUE);
+        if (!(deltas instanceof List) || !goodScale) {
+            throw new IllegalArgumentException("not a delta column: " + column);
+        }
+        List<String> numbers = new ArrayList<String>(((List<?>)deltas).size());
+        long value = 0;
+        for (Object delta : (List<?>)deltas) {
+            if (!isInteger(delta)) {
+                throw new IllegalArgumentException("not a difference: " + delta);
+            }
+            value += ((Number)delta).longValue();
+            if (scale == null) {
+                numbers.add(Long.toString(value));
+            }
+            else {
+                numbers.add(BigDecimal.valueOf(value, ((Number)scale).intValue()).toPlainString());
+            }
+        }
+        return numbers;
+    }
+
+    // JsonArrayValue.compile always puts a header (a list of keys) first.
+    // The values of an object never start with a list of strings, as the
+    // writers mark those, and never hold objects.
+    private boolean isCompiledArray(List<?> list) {
+        return !list.isEmpty() && isHeader(list.get(0));
+    }
+
+    // A list of keys. With a dictionary keys can also be ids, which are
+    // never negative, and [-n] stands for its first n keys; record values
+    // never hold numbers, so neither can be taken for a record.
+    boolean isHeader(Object item) {
+        if (!(item instanceof List)) {
+            return false;
+        }
+        List<?> keys = (List<?>)item;
+        if (dictionary != null && keys.size() == 1 && isPrefixSize(keys.get(0))) {
+            return true;
+        }
+        for (Object key : keys) {
+            boolean id = dictionary != null && isInteger(key) && ((Number)key).longValue() >= 0;
+            if (!(key instanceof String) && !(key instanceof Map) && !id) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isPrefixSize(Object key) {
+        return isInteger(key) && ((Number)key).longValue() < 0;
+    }
+
+    private static boolean isInteger(Object key) {
+        return key instanceof Long || key instanceof Integer;
+    }
+
+    // The header with dictionary ids replaced by their keys
+    List<?> resolve(Object header) {
+        List<?> ids = (List<?>)header;
+        if (dictionary == null) {
+            return ids;
+        }
+        if (ids.size() == 1 && isPrefixSize(ids.get(0))) {
+            long size = -((Number)ids.get(0)).longValue();
+            if (size > dictionary.size()) {
+                throw new IllegalArgumentException("header [-" + size + "] is longer than the dictionary");
+            }
+            List<Object> keys = new ArrayList<Object>((int)size);
+            for (int i = 0; i < size; ++i) {
+                keys.add(dictionary.keyAt(i));
+            }
+            return keys;
+        }
+        List<Object> keys = new ArrayList<Object>(ids.size());
+        for (Object key : ids) {
+            keys.add(key instanceof Number ? dictionary.keyAt((int)Math.min(((Number)key).longValue(), Integer.MAX_VALUE)) : key);
+        }
+        return keys;
+    }
+
+    // ******************************************************************
+    // ElementReader
+    //
+    // Builds one element of the root array at a time and pauses the
+    // parser as soon as it is complete. Objects only occur in headers,
+    // columnar blocks and {"array": [...]}.
+    // ******************************************************************
+    private static class ElementReader implements ContentHandler {
+        private LinkedList<Object> stack = new LinkedList<Object>();
+        private LinkedList<String> keys = new LinkedList<String>();
+        private Object element;
+        private boolean ready;
+        private boolean finished;
+
+        public boolean hasElement() {
+            return ready;
+        }
+
+        public boolean isFinished() {
+            return finished;
+        }
+
+        public Object element() {
+            ready = false;
+            Object e = element;
+            element = null;
+            return e;
+        }
+
+        public void startJSON() {
+        }
+
+        public void endJSON() {
+        }
+
+        public boolean startObject() throws ParseException {
+            if (stack.isEmpty()) {
+                throw new ParseException(ParseException.ERROR_UNEXPECTED_TOKEN);
+            }
+            stack.push(new LinkedHashMap<String, Object>());
+            return true;
+        }
+
+        public boolean endObject() {
+            return add(stack.pop());
+        }
+
+        public boolean startObjectEntry(String key) {
+            keys.push(key);
+            return true;
+        }
+
+        public boolean endObjectEntry() {
+            return true;
+        }
+
+        public boolean startArray() {
+            stack.push(new ArrayList<Object>());
+            return true;
+        }
+
+        public boolean endArray() {
+            Object done = stack.pop();
+            if (stack.isEmpty()) {
+                finished = true;
+                return false;
+            }
+            return add(done);
+        }
+
+        public boolean primitive(Object value) throws ParseException {
+            if (stack.isEmpty()) {
+                throw new ParseException(ParseException.ERROR_UNEXPECTED_TOKEN);
+            }
+            return add(value);
+        }
+
+        // returns false (pause) when a root-level element is complete
+        private boolean add(Object value) {
+            if (stack.size() == 1) {
+                element = value;
+                ready = true;
+                return false;
+            }
+            add(stack.peek(), value);
+            return true;
+        }
+
+        // the stack only holds the containers pushed above
+        @SuppressWarnings("unchecked")
+        private void add(Object container, Object value) {
+            if (container instanceof Map) {
+                ((Map<String, Object>)container).put(keys.pop(), value);
+            }
+            else {
+                ((List<Object>)container).add(value);
+            }
+        }
+    }
+}
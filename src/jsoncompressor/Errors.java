@@ -0,0 +1,58 @@
+package jsoncompressor;
+
+import java.io.*;
+import java.util.*;
+
+// This class is used to generate warning and error messages.
+// Each compression run gets its own instance, so runs don't share state.
+
+class Errors {
+    private PrintStream out;
+    private List<String> messages = new ArrayList<String>();
+
+    // messages are printed to System.out as they are reported
+    Errors() {
+        this(System.out);
+    }
+
+    // messages are printed to out, or only collected if out is null
+    Errors(PrintStream out) {
+        this.out = out;
+    }
+
+    void fatal(int lineNum, int charNum, String msg) {
+        report(lineNum + ":" + charNum + " **ERROR** " + msg);
+        fatalError = true;
+    }
+
+    void warn(int lineNum, int charNum, String msg) {
+        report(lineNum + ":" + charNum + " **WARNING** " + msg);
+    }
+    
+    boolean fatalError = false;
+    
+    void semanticError(int lineNum, int charNum, String msg) {
+        report(lineNum + ":" + charNum + " **SEMANTIC ERROR** " + msg);
+        semanticErrors++;
+    }
+
+    void semanticWarn(int lineNum, int charNum, String msg) {
+        report(lineNum + ":" + charNum + " **SEMANTIC WARNING** " + msg);
+        semanticWarns++;
+    }
+    
+    int semanticErrors = 0;
+    int semanticWarns = 0;
+
+    // everything reported so far, in order
+    List<String> messages() {
+        return messages;
+    }
+
+    private void report(String message) {
+        messages.add(message);
+        if (out != null) {
+            out.println(message);
+        }
+    }
+}
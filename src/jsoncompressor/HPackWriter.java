@@ -0,0 +1,913 @@
+package jsoncompressor;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.*;
+
+// **********************************************************************
+// HPackWriter
+//
+// Writes the compressed form of a Json tree straight from the Ast into a
+// byte buffer, encoding UTF-8 itself. At level 0 the output is byte for
+// byte what Json.compile followed by JsonWriter.write produces, without
+// building the JSONArrays, the per-pair SymbolTables or the boxed values
+// first. Higher levels share more through the header, see Schema.
+//
+// Objects that are the value of a pair are written without a header, as
+// the list of their values, and arrays as [header, elements...]. So that
+// a reader can tell the two apart, an object whose first value is null or
+// a list of strings (an object of strings) gets a null in front of its
+// values, and a nested array among the rows of an array is written as
+// {"array": [header, elements...]}.
+//
+// Json.compile grows a table while it compiles the elements of an array,
+// but every row only ever uses the columns of keys it has itself, so the
+// same rows come out of a table that is complete up front. Each array
+// therefore gets its keys in one quick pass over its elements, then the
+// header and the rows are written in a second pass.
+//
+// In columnar mode an array of at least MIN_COLUMNAR_ROWS objects, with
+// at least one key among them, is
+// written as [header, {"rows": n, "columns": [column, ...]}], one array
+// of n values per key, null where a record lacks the key. With delta
+// encoding on, a column of plain decimal numbers can instead be
+// {"delta": [first, differences...], "scale": digits after the point}
+// (scale left out when 0), if that is shorter. Only columns whose numbers
+// all have the same number of digits after the point, no leading zeros
+// and no negative zero are, so each number is spelled as it was when it
+// is rebuilt.
+//
+// With more than one thread the rows of a root array are written in
+// chunks on a ForkJoinPool, each into a buffer of its own, and the
+// buffers are copied out in order, so the output is the same. Only a few
+// chunks per thread are held at a time. Columns are written on one
+// thread.
+// **********************************************************************
+class HPackWriter implements Flushable {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final byte[] NULL = { 'n', 'u', 'l', 'l' };
+    private static final byte[] TRUE = { 't', 'r', 'u', 'e' };
+    private static final byte[] FALSE = { 'f', 'a', 'l', 's', 'e' };
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes();
+    // below this the block's own keys outweigh what it saves
+    public static final int MIN_COLUMNAR_ROWS = 16;
+    private static final int MAX_DELTA_SCALE = 9;
+    // rows per chunk, and chunks per thread in flight, with threads > 1
+    private static final int CHUNK_ROWS = 1024;
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private OutputStream out;
+    private byte[] buf = new byte[BUFFER_SIZE];
+    private int pos;
+    // bytes handed to out so far
+    private long drained;
+    private int level = 0;
+    private KeyDictionary dictionary;
+    private int enumLimit = Schema.NO_ENUM_LIMIT;
+    private boolean columnar;
+    private boolean delta;
+    private SchemaCache cache;
+    private int threads = 1;
+    private long headerNanos;
+
+    public HPackWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    // see Schema; 0 writes the same output as Json.compile
+    public void setLevel(int level) {
+        this.level = level;
+    }
+
+    // write header keys as ids into dictionary, see KeyDictionary
+    public void setDictionary(KeyDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    // enumerate no key with more distinct values than this, see Schema
+    public void setEnumLimit(int enumLimit) {
+        this.enumLimit = enumLimit;
+    }
+
+    // arrays of records as columns instead of rows
+    public void setColumnar(boolean columnar) {
+        this.columnar = columnar;
+    }
+
+    // columns of numbers as differences where that is shorter (columnar
+    // mode only)
+    public void setDeltaEncoding(boolean delta) {
+        this.delta = delta;
+    }
+
+    // schemas of root objects at level 0, see SchemaCache; the cache must
+    // only ever see writers with the same dictionary
+    public void setSchemaCache(SchemaCache cache) {
+        this.cache = cache;
+    }
+
+    // write the rows of a root array on this many threads
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    // time the last writeJson took to build the root header, which is the
+    // compile time of CompressionStats
+    public long headerNanos() {
+        return headerNanos;
+    }
+
+    // [header, elements...] for a root array, [header, row] for a root object
+    public void writeJson(Json program) throws IOException {
+        Ast content = program.content();
+        long start = System.nanoTime();
+        if (content instanceof JsonArray) {
+            JsonArray array = (JsonArray)content;
+            Schema schema = schemaOf(array);
+            headerNanos = System.nanoTime() - start;
+            if (threads > 1 && !writesColumns(array, schema)) {
+                writeByte('[');
+                writeHeader(schema);
+                writeElements(array, schema);
+                writeByte(']');
+            }
+            else {
+                writeArray(array, schema);
+            }
+            return;
+        }
+
+        JsonObject obj = (JsonObject)content;
+        if (cache != null && level == 0) {
+            writeCached(obj);
+            return;
+        }
+        Schema schema = level == 0 ? new Schema(keysOf(obj))
+                        : Schema.of(Collections.singletonList(obj), level, enumLimit);
+        headerNanos = System.nanoTime() - start;
+        writeByte('[');
+        writeHeader(schema);
+        writeByte(',');
+        writeRow(obj, schema);
+        writeByte(']');
+    }
+
+    // A root object whose shape is likely to have been seen before
+    private void writeCached(JsonObject obj) throws IOException {
+        SchemaCache.Entry entry = cache.get(obj);
+        if (entry == null) {
+            Schema schema = new Schema(keysOf(obj));
+            ByteArrayOutputStream header = new ByteArrayOutputStream();
+            HPackWriter headerWriter = new HPackWriter(header);
+            headerWriter.setDictionary(dictionary);
+            headerWriter.writeHeader(schema);
+            headerWriter.flush();
+            entry = new SchemaCache.Entry(schema, header.toByteArray(), isInOrder(obj, schema));
+            cache.put(obj, entry);
+        }
+
+        writeByte('[');
+        writeBytes(entry.header);
+        writeByte(',');
+        if (entry.ordered) {
+            writeByte('[');
+            writeValues(obj.pairList);
+            writeByte(']');
+        }
+        else {
+            writeRow(obj, entry.schema);
+        }
+        writeByte(']');
+    }
+
+    // true if obj has the keys of schema in column order, each once
+    private static boolean isInOrder(JsonObject obj, Schema schema) {
+        if (schema.keys.size() != obj.pairList.size()) {
+            return false;
+        }
+        for (int i = 0; i < obj.pairList.size(); ++i) {
+            if (!obj.pairList.get(i).key.equals(schema.keys.keyAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // [header, elements...] of an array
+    public void writeArray(JsonArray array) throws IOException {
+        writeArray(array, schemaOf(array));
+    }
+
+    private void writeArray(JsonArray array, Schema schema) throws IOException {
+        writeByte('[');
+        writeHeader(schema);
+        if (writesColumns(array, schema)) {
+            writeByte(',');
+            writeColumns(array, schema);
+            writeByte(']');
+            return;
+        }
+        for (int i = 0; i < array.valueList.size(); ++i) {
+            writeByte(',');
+            writeElement(array.valueList.get(i), schema);
+        }
+        writeByte(']');
+    }
+
+    // ",element" for each element of array, written in chunks on a pool
+    private void writeElements(JsonArray array, Schema schema) throws IOException {
+        int size = array.valueList.size();
+        ArrayDeque<ForkJoinTask<byte[]>> pending = new ArrayDeque<ForkJoinTask<byte[]>>();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            for (int lo = 0; lo < size; lo += CHUNK_ROWS) {
+                pending.add(pool.submit(new ChunkTask(array.valueList, lo, Math.min(size, lo + CHUNK_ROWS), schema)));
+                if (pending.size() >= threads * CHUNKS_PER_THREAD) {
+                    writeChunk(pending.remove());
+                }
+            }
+            while (!pending.isEmpty()) {
+                writeChunk(pending.remove());
+            }
+        }
+        finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void writeChunk(ForkJoinTask<byte[]> task) throws IOException {
+        try {
+            writeBytes(task.join());
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // A writer with the same settings, for part of the output
+    private HPackWriter copy(OutputStream out) {
+        HPackWriter writer = new HPackWriter(out);
+        writer.level = level;
+        writer.dictionary = dictionary;
+        writer.enumLimit = enumLimit;
+        writer.columnar = columnar;
+        writer.delta = delta;
+        return writer;
+    }
+
+    // The elements [lo, hi), each after a comma; only reads the schema
+    private class ChunkTask extends RecursiveTask<byte[]> {
+        private static final long serialVersionUID = 1L;
+
+        private JsonValueList values;
+        private int lo, hi;
+        private Schema schema;
+
+        ChunkTask(JsonValueList values, int lo, int hi, Schema schema) {
+            this.values = values;
+            this.lo = lo;
+            this.hi = hi;
+            this.schema = schema;
+        }
+
+        protected byte[] compute() {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 16);
+            HPackWriter writer = copy(bytes);
+            try {
+                for (int i = lo; i < hi; ++i) {
+                    writer.writeByte(',');
+                    writer.writeElement(values.get(i), schema);
+                }
+                writer.flush();
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return bytes.toByteArray();
+        }
+    }
+
+    // Records without keys have no columns to say how many there are, so
+    // they stay rows
+    private boolean writesColumns(JsonArray array, Schema schema) {
+        return columnar && schema.keys.size() > 0 && isRecordArray(array);
+    }
+
+    private static boolean isRecordArray(JsonArray array) {
+        if (array.valueList.size() < MIN_COLUMNAR_ROWS) {
+            return false;
+        }
+        for (int i = 0; i < array.valueList.size(); ++i) {
+            if (!(array.valueList.get(i) instanceof JsonObjectValue)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // {"rows": n, "columns": [...]} of an array of objects; a repeated
+    // key keeps its last value, as in a row
+    private void writeColumns(JsonArray array, Schema schema) throws IOException {
+        int rows = array.valueList.size();
+        JsonValue[][] cells = new JsonValue[schema.keys.size()][rows];
+        for (int r = 0; r < rows; ++r) {
+            JsonPairList pairs = ((JsonObjectValue)array.valueList.get(r)).obj.pairList;
+            for (int i = 0; i < pairs.size(); ++i) {
+                JsonPair pair = pairs.get(i);
+                cells[schema.keys.indexOf(pair.key)][r] = pair.value;
+            }
+        }
+
+        writeByte('{');
+        writeString("rows");
+        writeByte(':');
+        writeInt(rows);
+        writeByte(',');
+        writeString("columns");
+        writeByte(':');
+        writeByte('[');
+        for (int c = 0; c < cells.length; ++c) {
+            writeComma(c);
+            Schema.Column column = schema.columns == null ? null : schema.columns[c];
+            boolean shared = column != null && (column.nested != null || column.isEnumerated());
+            if (delta && !shared && writeDeltas(cells[c])) {
+                continue;
+            }
+            writeByte('[');
+            for (int r = 0; r < rows; ++r) {
+                writeComma(r);
+                if (cells[c][r] == null) {
+                    writeNull();
+                }
+                else {
+                    writeColumn(schema, c, cells[c][r]);
+                }
+            }
+            writeByte(']');
+        }
+        writeByte(']');
+        writeByte('}');
+    }
+
+    // Writes a column of plain decimal numbers as {"delta": [...]} and
+    // returns true, unless that is not shorter or would change how one
+    // of them is spelled
+    private boolean writeDeltas(JsonValue[] values) throws IOException {
+        String[] numbers = new String[values.length];
+        int scale = -1;
+        long plainLength = 0;
+        for (int r = 0; r < values.length; ++r) {
+            if (!(values[r] instanceof NumberLit)) {
+                return false;
+            }
+            numbers[r] = values[r].toString();
+            int point = decimalPoint(numbers[r]);
+            if (point == -2 || !isCanonical(numbers[r], point)) {
+                return false;
+            }
+            int digits = point < 0 ? 0 : numbers[r].length() - point - 1;
+            if (scale >= 0 && digits != scale) {
+                return false;
+            }
+            scale = digits;
+            plainLength += numbers[r].length() + 3;
+        }
+        scale = Math.max(scale, 0);
+        if (scale > MAX_DELTA_SCALE) {
+            return false;
+        }
+
+        long[] deltas = new long[values.length];
+        long deltaLength = scale == 0 ? 11 : 21;
+        long previous = 0;
+        try {
+            for (int r = 0; r < values.length; ++r) {
+                long unscaled = new BigDecimal(numbers[r]).movePointRight(scale).longValueExact();
+                deltas[r] = Math.subtractExact(unscaled, previous);
+                previous = unscaled;
+                deltaLength += Long.toString(deltas[r]).length() + 1;
+            }
+        }
+        catch (ArithmeticException e) {
+            return false;
+        }
+        if (deltaLength >= plainLength) {
+            return false;
+        }
+
+        writeByte('{');
+        writeString("delta");
+        writeByte(':');
+        writeByte('[');
+        for (int r = 0; r < deltas.length; ++r) {
+            writeComma(r);
+            writeAscii(Long.toString(deltas[r]));
+        }
+        writeByte(']');
+        if (scale > 0) {
+            writeByte(',');
+            writeString("scale");
+            writeByte(':');
+            writeInt(scale);
+        }
+        writeByte('}');
+        return true;
+    }
+
+    // true if number, with its '.' at point (-1 for none), is what
+    // BigDecimal gives back for its digits and scale: no leading zeros
+    // and not a negative zero
+    private static boolean isCanonical(String number, int point) {
+        int start = number.startsWith("-") ? 1 : 0;
+        int end = point < 0 ? number.length() : point;
+        if (end - start > 1 && number.charAt(start) == '0') {
+            return false;
+        }
+        if (start == 1) {
+            for (int i = 1; i < number.length(); ++i) {
+                if (number.charAt(i) != '0' && number.charAt(i) != '.') {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return true;
+    }
+
+    // The index of the '.' in -?digits(.digits)?, -1 if there is none,
+    // -2 if number is not like that
+    private static int decimalPoint(String number) {
+        int point = -1;
+        int start = number.startsWith("-") ? 1 : 0;
+        if (start == number.length()) {
+            return -2;
+        }
+        for (int i = start; i < number.length(); ++i) {
+            char c = number.charAt(i);
+            if (c == '.' && point < 0 && i > start && i + 1 < number.length()) {
+                point = i;
+            }
+            else if (c < '0' || c > '9') {
+                return -2;
+            }
+        }
+        return point;
+    }
+
+    // An element of an array whose objects are laid out by schema
+    public void writeElement(JsonValue value, Schema schema) throws IOException {
+        if (value instanceof JsonObjectValue) {
+            writeRow(((JsonObjectValue)value).obj, schema);
+        }
+        else if (value instanceof JsonArrayValue && schema.keys.size() > 0) {
+            writeNestedArray(((JsonArrayValue)value).array);
+        }
+        else {
+            writeValue(value);
+        }
+    }
+
+    // {"array": [header, elements...]}, an array among rows, which could
+    // be taken for a row otherwise
+    public void writeNestedArray(JsonArray array) throws IOException {
+        writeByte('{');
+        writeString("array");
+        writeByte(':');
+        writeArray(array);
+        writeByte('}');
+    }
+
+    // The values of obj in the columns of schema, which holds all its keys.
+    // Missing keys are null, a repeated key keeps its last value and the
+    // row ends at its last column, like JsonObject.compile.
+    public void writeRow(JsonObject obj, Schema schema) throws IOException {
+        JsonPairList pairs = obj.pairList;
+        SymbolTable table = schema.keys;
+
+        // the common case: keys in column order, each at most once
+        int last = -1;
+        boolean ordered = true;
+        for (int i = 0; i < pairs.size() && ordered; ++i) {
+            int column = table.indexOf(pairs.get(i).key);
+            ordered = column > last;
+            last = column;
+        }
+
+        writeByte('[');
+        if (ordered) {
+            int written = 0;
+            for (int i = 0; i < pairs.size(); ++i) {
+                JsonPair pair = pairs.get(i);
+                int column = table.indexOf(pair.key);
+                for (; written < column; ++written) {
+                    writeComma(written);
+                    writeNull();
+                }
+                writeComma(written++);
+                writeColumn(schema, column, pair.value);
+            }
+        }
+        else {
+            JsonValue[] columns = new JsonValue[table.size()];
+            int size = 0;
+            for (int i = 0; i < pairs.size(); ++i) {
+                JsonPair pair = pairs.get(i);
+                int column = table.indexOf(pair.key);
+                columns[column] = pair.value;
+                size = Math.max(size, column + 1);
+            }
+            for (int i = 0; i < size; ++i) {
+                writeComma(i);
+                if (columns[i] == null) {
+                    writeNull();
+                }
+                else {
+                    writeColumn(schema, i, columns[i]);
+                }
+            }
+        }
+        writeByte(']');
+    }
+
+    // A value in a row: a row of the nested schema, an index into the
+    // enumerated values (an array of them for an array), or the value
+    // itself
+    private void writeColumn(Schema schema, int i, JsonValue value) throws IOException {
+        if (schema.columns == null || value instanceof NullLit) {
+            writeValue(value);
+            return;
+        }
+        Schema.Column column = schema.columns[i];
+        if (column.nested != null && value instanceof JsonObjectValue) {
+            writeRow(((JsonObjectValue)value).obj, column.nested);
+        }
+        else if (column.enumElements) {
+            JsonValueList elements = ((JsonArrayValue)value).array.valueList;
+            writeByte('[');
+            for (int j = 0; j < elements.size(); ++j) {
+                writeComma(j);
+                writeInt(column.indexOf(elements.get(j)));
+            }
+            writeByte(']');
+        }
+        else if (column.isEnumerated()) {
+            writeInt(column.indexOf(value));
+        }
+        else {
+            writeValue(value);
+        }
+    }
+
+    // A value that is not laid out by an enclosing schema: the value of a
+    // pair or a literal. An object here gets a scope of its own and, as
+    // in Json.compile, its header is not written; a repeated key keeps
+    // its last value.
+    public void writeValue(JsonValue value) throws IOException {
+        if (value instanceof StringLit) {
+            writeString(((StringLit)value).str());
+        }
+        else if (value instanceof NumberLit) {
+            // digits, signs, '.' and 'e' need no escaping
+            writeByte('"');
+            writeAscii(value.toString());
+            writeByte('"');
+        }
+        else if (value instanceof BoolLit) {
+            writeBytes(((BoolLit)value).compile() ? TRUE : FALSE);
+        }
+        else if (value instanceof NullLit) {
+            writeNull();
+        }
+        else if (value instanceof JsonArrayValue) {
+            writeArray(((JsonArrayValue)value).array);
+        }
+        else {
+            JsonPairList pairs = distinctPairs(((JsonObjectValue)value).obj);
+            writeByte('[');
+            if (needsMarker(pairs)) {
+                writeNull();
+                writeByte(',');
+            }
+            writeValues(pairs);
+            writeByte(']');
+        }
+    }
+
+    // true if the values of an object without its header could be taken
+    // for a compiled array: the first value is a list of strings, or the
+    // first value is null and so the marker itself
+    static boolean needsMarker(JsonPairList pairs) {
+        if (pairs.isEmpty()) {
+            return false;
+        }
+        JsonValue first = pairs.get(0).value;
+        if (first instanceof NullLit) {
+            return true;
+        }
+        if (!(first instanceof JsonObjectValue)) {
+            return false;
+        }
+        for (JsonPair pair : distinctPairs(((JsonObjectValue)first).obj)) {
+            if (!(pair.value instanceof StringLit) && !(pair.value instanceof NumberLit)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // The pairs of obj with each key once, where it first appears, holding
+    // its last value
+    static JsonPairList distinctPairs(JsonObject obj) {
+        if (!hasRepeatedKey(obj)) {
+            return obj.pairList;
+        }
+        SymbolTable keys = keysOf(obj);
+        JsonPair[] last = new JsonPair[keys.size()];
+        for (JsonPair pair : obj.pairList) {
+            last[keys.indexOf(pair.key)] = pair;
+        }
+        JsonPairList pairs = new JsonPairList();
+        for (int i = 0; i < last.length; ++i) {
+            pairs.add(new JsonPair(keys.keyAt(i), last[i].value));
+        }
+        return pairs;
+    }
+
+    // Keys are strings, or ids with a dictionary; a key with a nested
+    // schema is {"key": [header]} and an enumerated one
+    // {"key": {"enum": [values]}}. A header that is the first n > 0 keys
+    // of the dictionary is [-n]: ids are never negative, and a header is
+    // always a list, so a compiled array cannot be taken for the values
+    // of an object.
+    public void writeHeader(Schema schema) throws IOException {
+        if (dictionary != null && schema.keys.size() > 0 && isDictionaryPrefix(schema)) {
+            writeByte('[');
+            writeByte('-');
+            writeInt(schema.keys.size());
+            writeByte(']');
+            return;
+        }
+
+        writeByte('[');
+        for (int i = 0; i < schema.keys.size(); ++i) {
+            writeComma(i);
+            Schema.Column column = schema.columns == null ? null : schema.columns[i];
+            if (column == null || (column.nested == null && !column.isEnumerated())) {
+                writeKey(schema.keys.keyAt(i));
+                continue;
+            }
+
+            writeByte('{');
+            writeString(schema.keys.keyAt(i));
+            writeByte(':');
+            if (column.nested != null) {
+                writeHeader(column.nested);
+            }
+            else {
+                writeByte('{');
+                writeString("enum");
+                writeByte(':');
+                writeByte('[');
+                for (int j = 0; j < column.enumValues.size(); ++j) {
+                    writeComma(j);
+                    Object enumValue = column.enumValues.get(j);
+                    if (enumValue instanceof String) {
+                        writeString((String)enumValue);
+                    }
+                    else {
+                        writeBytes((Boolean)enumValue ? TRUE : FALSE);
+                    }
+                }
+                writeByte(']');
+                writeByte('}');
+            }
+            writeByte('}');
+        }
+        writeByte(']');
+    }
+
+    private void writeKey(String key) throws IOException {
+        int id = dictionary == null ? -1 : dictionary.idOf(key);
+        if (id >= 0) {
+            writeInt(id);
+        }
+        else {
+            writeString(key);
+        }
+    }
+
+    // true if the header is the first keys of the dictionary, in order,
+    // with nothing nested or enumerated
+    private boolean isDictionaryPrefix(Schema schema) {
+        for (int i = 0; i < schema.keys.size(); ++i) {
+            if (dictionary.idOf(schema.keys.keyAt(i)) != i) {
+                return false;
+            }
+            Schema.Column column = schema.columns == null ? null : schema.columns[i];
+            if (column != null && (column.nested != null || column.isEnumerated())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Schema schemaOf(JsonArray array) {
+        if (level == 0) {
+            return new Schema(keysOf(array));
+        }
+        List<JsonObject> objects = new ArrayList<JsonObject>();
+        for (int i = 0; i < array.valueList.size(); ++i) {
+            JsonValue value = array.valueList.get(i);
+            if (value instanceof JsonObjectValue) {
+                objects.add(((JsonObjectValue)value).obj);
+            }
+        }
+        return Schema.of(objects, level, enumLimit);
+    }
+
+    // Keys of the objects in array, in order of first appearance
+    public static SymbolTable keysOf(JsonArray array) {
+        SymbolTable table = new SymbolTable();
+        for (int i = 0; i < array.valueList.size(); ++i) {
+            JsonValue value = array.valueList.get(i);
+            if (value instanceof JsonObjectValue) {
+                addKeys(((JsonObjectValue)value).obj, table);
+            }
+        }
+        return table;
+    }
+
+    public static SymbolTable keysOf(JsonObject obj) {
+        SymbolTable table = new SymbolTable();
+        addKeys(obj, table);
+        return table;
+    }
+
+    static void addKeys(JsonObject obj, SymbolTable table) {
+        for (int i = 0; i < obj.pairList.size(); ++i) {
+            table.addKey(obj.pairList.get(i).key);
+        }
+    }
+
+    // Objects are small, so a scan is cheaper than a table
+    private static boolean hasRepeatedKey(JsonObject obj) {
+        JsonPairList pairs = obj.pairList;
+        if (pairs.size() > 16) {
+            return keysOf(obj).size() < pairs.size();
+        }
+        for (int i = 1; i < pairs.size(); ++i) {
+            String key = pairs.get(i).key;
+            for (int j = 0; j < i; ++j) {
+                if (key.equals(pairs.get(j).key)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // ******************************************************************
+    // Output
+    // ******************************************************************
+
+    // The values of pairs in order
+    private void writeValues(JsonPairList pairs) throws IOException {
+        for (int i = 0; i < pairs.size(); ++i) {
+            writeComma(i);
+            writeValue(pairs.get(i).value);
+        }
+    }
+
+    public void writeNull() throws IOException {
+        writeBytes(NULL);
+    }
+
+    private void writeInt(int i) throws IOException {
+        if (i >= 10) {
+            writeInt(i / 10);
+        }
+        writeByte('0' + i % 10);
+    }
+
+    private void writeAscii(String s) throws IOException {
+        for (int i = 0; i < s.length(); ++i) {
+            writeByte(s.charAt(i));
+        }
+    }
+
+    private void writeComma(int index) throws IOException {
+        if (index > 0) {
+            writeByte(',');
+        }
+    }
+
+    // A quoted string, escaped like JSONValue.escape
+    public void writeString(String s) throws IOException {
+        writeByte('"');
+        for (int i = 0; i < s.length(); ++i) {
+            char c = s.charAt(i);
+            switch (c) {
+            case '"':
+                writeEscape('"');
+                break;
+            case '\\':
+                writeEscape('\\');
+                break;
+            case '\b':
+                writeEscape('b');
+                break;
+            case '\f':
+                writeEscape('f');
+                break;
+            case '\n':
+                writeEscape('n');
+                break;
+            case '\r':
+                writeEscape('r');
+                break;
+            case '\t':
+                writeEscape('t');
+                break;
+            case '/':
+                writeEscape('/');
+                break;
+            default:
+                if (c < 0x20 || (c >= 0x7F && c <= 0x9F) || (c >= 0x2000 && c <= 0x20FF)) {
+                    writeEscape('u');
+                    writeByte(HEX[(c >> 12) & 0xF]);
+                    writeByte(HEX[(c >> 8) & 0xF]);
+                    writeByte(HEX[(c >> 4) & 0xF]);
+                    writeByte(HEX[c & 0xF]);
+                }
+                else if (c < 0x80) {
+                    writeByte(c);
+                }
+                else if (c < 0x800) {
+                    writeByte(0xC0 | (c >> 6));
+                    writeByte(0x80 | (c & 0x3F));
+                }
+                else if (Character.isHighSurrogate(c) && i + 1 < s.length()
+                         && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, s.charAt(++i));
+                    writeByte(0xF0 | (cp >> 18));
+                    writeByte(0x80 | ((cp >> 12) & 0x3F));
+                    writeByte(0x80 | ((cp >> 6) & 0x3F));
+                    writeByte(0x80 | (cp & 0x3F));
+                }
+                else if (Character.isSurrogate(c)) {
+                    // unpaired, replaced the way OutputStreamWriter does
+                    writeByte('?');
+                }
+                else {
+                    writeByte(0xE0 | (c >> 12));
+                    writeByte(0x80 | ((c >> 6) & 0x3F));
+                    writeByte(0x80 | (c & 0x3F));
+                }
+            }
+        }
+        writeByte('"');
+    }
+
+    private void writeEscape(char c) throws IOException {
+        writeByte('\\');
+        writeByte(c);
+    }
+
+    public void writeByte(int b) throws IOException {
+        if (pos == buf.length) {
+            drain();
+        }
+        buf[pos++] = (byte)b;
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+        if (buf.length - pos < bytes.length) {
+            drain();
+            if (bytes.length > buf.length) {
+                out.write(bytes);
+                drained += bytes.length;
+                return;
+            }
+        }
+        System.arraycopy(bytes, 0, buf, pos, bytes.length);
+        pos += bytes.length;
+    }
+
+    private void drain() throws IOException {
+        out.write(buf, 0, pos);
+        drained += pos;
+        pos = 0;
+    }
+
+    // the number of bytes written so far, whether out has them yet or not
+    public long position() {
+        return drained + pos;
+    }
+
+    // out is flushed but left open
+    public void flush() throws IOException {
+        drain();
+        out.flush();
+    }
+}
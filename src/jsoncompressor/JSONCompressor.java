@@ -0,0 +1,682 @@
+package jsoncompressor;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java_cup.runtime.*;
+
+public class JSONCompressor {
+    private static final int DEFAULT_BATCH_LINES = 1000;
+    private static final int DEFAULT_BLOCK_SIZE = 10000;
+
+    public static void main(String[] args) throws IOException {
+        // Options come before the file names
+        boolean streaming = false;
+        boolean decompress = false;
+        boolean byteLexer = false;
+        boolean mapped = false;
+        boolean columnar = false;
+        boolean delta = false;
+        boolean binary = false;
+        boolean pipelined = false;
+        int batchLines = 0;
+        long maxDelay = 0;
+        int blockSize = 0;
+        long[] range = null;
+        List<String> fields = null;
+        int threads = 1;
+        int level = 0;
+        int enumLimit = Schema.NO_ENUM_LIMIT;
+        boolean stats = false;
+        boolean train = false;
+        String dictFile = null;
+        String statsFile = null;
+        int argIndex = 0;
+        while (argIndex < args.length && args[argIndex].startsWith("-") && args[argIndex].length() > 1) {
+            String option = args[argIndex++];
+            if (option.equals("-stream")) {
+                streaming = true;
+            } else if (option.equals("-bytelex")) {
+                byteLexer = true;
+            } else if (option.equals("-mmap")) {
+                mapped = true;
+            } else if (option.equals("-columnar")) {
+                columnar = true;
+            } else if (option.equals("-delta")) {
+                delta = true;
+            } else if (option.equals("-lines")) {
+                batchLines = DEFAULT_BATCH_LINES;
+            } else if (option.startsWith("-lines=")) {
+                try {
+                    batchLines = Integer.parseInt(option.substring("-lines=".length()));
+                } catch (NumberFormatException ex) {
+                    batchLines = -1;
+                }
+                if (batchLines < 1) {
+                    System.err.println("Bad batch size in " + option);
+                    System.exit(-1);
+                }
+            } else if (option.startsWith("-maxdelay=")) {
+                try {
+                    maxDelay = Long.parseLong(option.substring("-maxdelay=".length()));
+                } catch (NumberFormatException ex) {
+                    maxDelay = -1;
+                }
+                if (maxDelay < 1) {
+                    System.err.println("Bad delay in " + option);
+                    System.exit(-1);
+                }
+            } else if (option.equals("-blocks")) {
+                blockSize = DEFAULT_BLOCK_SIZE;
+            } else if (option.startsWith("-blocks=")) {
+                try {
+                    blockSize = Integer.parseInt(option.substring("-blocks=".length()));
+                } catch (NumberFormatException ex) {
+                    blockSize = -1;
+                }
+                if (blockSize < 1) {
+                    System.err.println("Bad block size in " + option);
+                    System.exit(-1);
+                }
+            } else if (option.startsWith("-fields=")) {
+                fields = Arrays.asList(option.substring("-fields=".length()).split(","));
+                if (fields.contains("")) {
+                    System.err.println("Empty field in " + option);
+                    System.exit(-1);
+                }
+            } else if (option.startsWith("-range=")) {
+                String[] bounds = option.substring("-range=".length()).split(":", -1);
+                try {
+                    range = new long[] { Long.parseLong(bounds[0]), Long.parseLong(bounds[1]) };
+                } catch (NumberFormatException | ArrayIndexOutOfBoundsException ex) {
+                    range = new long[] { -1, -1 };
+                }
+                if (range[0] < 0 || range[1] < range[0]) {
+                    System.err.println("Bad record range in " + option + ", expected FROM:TO");
+                    System.exit(-1);
+                }
+            } else if (option.equals("-pipeline")) {
+                pipelined = true;
+            } else if (option.equals("-binary")) {
+                binary = true;
+            } else if (option.equals("-parallel")) {
+                threads = Runtime.getRuntime().availableProcessors();
+            } else if (option.startsWith("-parallel=")) {
+                try {
+                    threads = Integer.parseInt(option.substring("-parallel=".length()));
+                } catch (NumberFormatException ex) {
+                    threads = 0;
+                }
+                if (threads < 1) {
+                    System.err.println("Bad thread count in " + option);
+                    System.exit(-1);
+                }
+            } else if (option.startsWith("-level=")) {
+                try {
+                    level = Integer.parseInt(option.substring("-level=".length()));
+                } catch (NumberFormatException ex) {
+                    level = -1;
+                }
+                if (level < 0 || level > Schema.MAX_LEVEL) {
+                    System.err.println("Bad compression level in " + option + ", expected 0 to " + Schema.MAX_LEVEL);
+                    System.exit(-1);
+                }
+            } else if (option.startsWith("-enums=")) {
+                try {
+                    enumLimit = Integer.parseInt(option.substring("-enums=".length()));
+                } catch (NumberFormatException ex) {
+                    enumLimit = 0;
+                }
+                if (enumLimit < 1) {
+                    System.err.println("Bad enum limit in " + option);
+                    System.exit(-1);
+                }
+            } else if (option.startsWith("-dict=")) {
+                dictFile = option.substring("-dict=".length());
+            } else if (option.equals("-train")) {
+                train = true;
+            } else if (option.equals("-stats")) {
+                stats = true;
+            } else if (option.startsWith("-stats=")) {
+                stats = true;
+                statsFile = option.substring("-stats=".length());
+            } else if (option.equals("-d")) {
+                decompress = true;
+            } else {
+                System.err.println("Unknown option " + option);
+                System.exit(-1);
+            }
+        }
+
+        // SimpleC file
+        String fileJson = "";
+        String fileOutput = "";
+        if (args.length - argIndex >= 2) {
+            fileJson = args[argIndex];
+            fileOutput = args[argIndex + 1];
+        } else {
+            System.err.println("usage: JSONCompressor [-stream | -pipeline | -bytelex | -mmap | -parallel[=N] | -columnar [-delta] | -binary | -level=N | -enums=N | -dict=file | -stats[=file] | -d] <Input_file> <Output_file>");
+            System.err.println("       JSONCompressor -lines[=N] [-maxdelay=ms | -d] [options] <Input_file | -> <Output_file>");
+            System.err.println("       JSONCompressor -d -fields=path,path... [-dict=file] <Input_file> <Output_file>  (dotted paths need output written at -level=1 or up)");
+            System.err.println("       JSONCompressor -blocks[=N] [options] <Input_file> <Output_file>");
+            System.err.println("       JSONCompressor -d -blocks [-range=FROM:TO] [-parallel[=N]] [-dict=file] <Input_file> <Output_file>");
+            System.err.println("       JSONCompressor -train <Sample_file> <Dictionary_file>");
+            System.exit(-1);
+        }
+
+        if (stats && (streaming || decompress)) {
+            System.err.println("-stats cannot be combined with -stream or -d");
+            System.exit(-1);
+        }
+        if (level > 0 && streaming) {
+            System.err.println("-level cannot be combined with -stream");
+            System.exit(-1);
+        }
+        if (enumLimit != Schema.NO_ENUM_LIMIT && level < 2) {
+            System.err.println("-enums needs -level=2 or higher");
+            System.exit(-1);
+        }
+        if (columnar && streaming) {
+            System.err.println("-columnar cannot be combined with -stream");
+            System.exit(-1);
+        }
+        if (delta && !columnar) {
+            System.err.println("-delta needs -columnar");
+            System.exit(-1);
+        }
+        if (batchLines > 0 && (streaming || pipelined || stats || binary || mapped)) {
+            System.err.println("-lines cannot be combined with -stream, -pipeline, -stats, -binary or -mmap");
+            System.exit(-1);
+        }
+        if (blockSize > 0 && (streaming || pipelined || stats || mapped || batchLines > 0)) {
+            System.err.println("-blocks cannot be combined with -stream, -pipeline, -stats, -mmap or -lines");
+            System.exit(-1);
+        }
+        if (range != null && (blockSize == 0 || !decompress)) {
+            System.err.println("-range needs -d -blocks");
+            System.exit(-1);
+        }
+        if (fields != null && (!decompress || binary || batchLines > 0 || blockSize > 0)) {
+            System.err.println("-fields needs -d, and not -binary, -lines or -blocks");
+            System.exit(-1);
+        }
+        if (maxDelay > 0 && (batchLines == 0 || decompress)) {
+            System.err.println("-maxdelay needs -lines");
+            System.exit(-1);
+        }
+        if (pipelined && (streaming || decompress || stats || threads > 1 || level > 0 || columnar
+                          || binary || dictFile != null)) {
+            System.err.println("-pipeline can only be combined with -bytelex or -mmap");
+            System.exit(-1);
+        }
+        if (binary && (streaming || level > 0 || columnar || dictFile != null)) {
+            System.err.println("-binary cannot be combined with -stream, -level, -columnar or -dict");
+            System.exit(-1);
+        }
+        if (dictFile != null && streaming) {
+            System.err.println("-dict cannot be combined with -stream");
+            System.exit(-1);
+        }
+
+        if (train) {
+            train(fileJson, fileOutput);
+            return;
+        }
+
+        KeyDictionary dictionary = dictFile == null ? null : loadDictionary(dictFile);
+
+        if (batchLines > 0) {
+            if (decompress) {
+                decompressLines(fileJson, fileOutput, dictionary);
+            }
+            else {
+                compressLines(fileJson, fileOutput, batchLines, maxDelay,
+                              newCompressor(byteLexer, threads, level, enumLimit, columnar, delta,
+                                            binary, dictionary));
+            }
+            return;
+        }
+        if (blockSize > 0) {
+            if (decompress) {
+                decompressBlocks(fileJson, fileOutput, range, threads, dictionary);
+            }
+            else {
+                compressBlocks(fileJson, fileOutput, blockSize,
+                               newCompressor(byteLexer, threads, level, enumLimit, columnar, delta,
+                                             binary, dictionary));
+            }
+            return;
+        }
+
+        if (decompress) {
+            if (binary) {
+                decompressBinary(fileJson, fileOutput);
+            }
+            else if (fields != null) {
+                project(fileJson, fileOutput, fields, dictionary);
+            }
+            else {
+                decompress(fileJson, fileOutput, dictionary);
+            }
+            return;
+        }
+
+        Errors errors = new Errors();
+
+        if (streaming) {
+            compressStreaming(fileJson, fileOutput, mapped, errors);
+            return;
+        }
+        if (pipelined) {
+            compressPipelined(fileJson, fileOutput, byteLexer, mapped, errors);
+            return;
+        }
+
+        CompressionStats runStats = stats ? new CompressionStats() : null;
+        if (runStats != null) {
+            runStats.bytesIn = new File(fileJson).length();
+            runStats.startAllocation();
+        }
+
+        // Open input file
+        Closeable reader = null;
+        java_cup.runtime.Scanner scanner = null;
+        try {
+            if (mapped) {
+                MappedInput input = new MappedInput(fileJson);
+                reader = input;
+                scanner = new ByteLexer(input, errors);
+            } else if (byteLexer) {
+                scanner = new ByteLexer(Files.readAllBytes(Paths.get(fileJson)), errors);
+            } else {
+                FileReader fileReader = new FileReader(fileJson);
+                reader = fileReader;
+                scanner = new Yylex(fileReader, errors);
+            }
+        } catch (FileNotFoundException | NoSuchFileException ex) {
+            System.err.println("File " + fileJson + " not found!");
+            System.exit(-1);
+        }
+
+        Json program = null;
+        try {
+            program = Compressor.parse(scanner, errors, runStats);
+        } catch (SyntaxError ex) {
+            // already reported
+            System.exit(-1);
+        } catch (Exception ex) {
+            System.err.println("Exception occured during parse: " + ex);
+            System.exit(-1);
+        }
+
+        if (errors.fatalError) {
+            System.err.println("Confused by earlier errors: aborting");
+            System.exit(0);
+        }
+
+        // Compile
+        program.threads = threads;
+        program.level = level;
+        program.dictionary = dictionary;
+        program.enumLimit = enumLimit;
+        program.columnar = columnar;
+        program.delta = delta;
+        program.binary = binary;
+        try {
+            JsonWriter.writeToFile(fileOutput, program, runStats);
+        } catch (IOException ex) {
+            System.err.println("Could not write " + fileOutput + ": " + ex);
+            System.exit(-1);
+        }
+
+        // Close and save files
+        if (reader != null) {
+            reader.close();
+        }
+
+        System.out.println("Finished!");
+
+        if (runStats != null) {
+            runStats.stopAllocation();
+            runStats.countTables(program);
+            reportStats(runStats, statsFile);
+        }
+    }
+
+    // Prints the stats, or writes them as JSON if a file was given
+    private static void reportStats(CompressionStats stats, String statsFile) {
+        if (statsFile == null) {
+            System.out.println(stats);
+            return;
+        }
+        try {
+            Files.write(Paths.get(statsFile), stats.toJSONString().getBytes("UTF-8"));
+        } catch (IOException ex) {
+            System.err.println("Could not write " + statsFile + ": " + ex);
+            System.exit(-1);
+        }
+    }
+
+    // Newline-delimited JSON, one block per batch of lines, see
+    // LineCompressor; - reads standard input
+    private static void compressLines(String fileJson, String fileOutput, int batchLines, long maxDelay,
+                                      Compressor compressor) throws IOException {
+        InputStream in = System.in;
+        if (!fileJson.equals("-")) {
+            try {
+                in = new FileInputStream(fileJson);
+            } catch (FileNotFoundException ex) {
+                System.err.println("File " + fileJson + " not found!");
+                System.exit(-1);
+            }
+        }
+
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(fileOutput), 1 << 16);
+        try {
+            compressor.compressLines(in, out, batchLines, maxDelay);
+        } catch (SyntaxError ex) {
+            System.err.println(ex.getMessage());
+            System.exit(-1);
+        } finally {
+            out.close();
+            in.close();
+        }
+
+        System.out.println("Finished!");
+    }
+
+    // A root array in independent blocks with an index, see BlockWriter
+    private static void compressBlocks(String fileJson, String fileOutput, int blockSize,
+                                       Compressor compressor) throws IOException {
+        InputStream in = null;
+        try {
+            in = new FileInputStream(fileJson);
+        } catch (FileNotFoundException ex) {
+            System.err.println("File " + fileJson + " not found!");
+            System.exit(-1);
+        }
+
+        OutputStream out = new FileOutputStream(fileOutput);
+        try {
+            compressor.compressBlocks(in, out, blockSize);
+        } catch (SyntaxError ex) {
+            System.err.println(ex.getMessage());
+            System.exit(-1);
+        } finally {
+            out.close();
+            in.close();
+        }
+
+        System.out.println("Finished!");
+    }
+
+    // Writes records [range[0], range[1]) of a block container, or all of
+    // them if range is null, as a JSON array
+    private static void decompressBlocks(String fileJson, String fileOutput, long[] range, int threads,
+                                         KeyDictionary dictionary) throws IOException {
+        if (!new File(fileJson).isFile()) {
+            System.err.println("File " + fileJson + " not found!");
+            System.exit(-1);
+        }
+
+        BlockReader reader = null;
+        try {
+            reader = new BlockReader(new File(fileJson), dictionary);
+        } catch (IOException ex) {
+            System.err.println("Could not read " + fileJson + ": " + ex.getMessage());
+            System.exit(-1);
+        }
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(fileOutput), "UTF-8"));
+        try {
+            long from = range == null ? 0 : Math.min(range[0], reader.recordCount());
+            long to = range == null ? reader.recordCount() : Math.min(range[1], reader.recordCount());
+            reader.decompress(from, Math.max(from, to), threads, writer);
+        } catch (IOException ex) {
+            System.err.println("Exception occured during decompression: " + ex);
+            System.exit(-1);
+        } finally {
+            writer.close();
+            reader.close();
+        }
+
+        System.out.println("Finished!");
+    }
+
+    private static Compressor newCompressor(boolean byteLexer, int threads, int level, int enumLimit,
+                                            boolean columnar, boolean delta, boolean binary,
+                                            KeyDictionary dictionary) {
+        Compressor compressor = new Compressor();
+        compressor.setByteLexer(byteLexer);
+        compressor.setThreads(threads);
+        compressor.setLevel(level);
+        if (enumLimit != Schema.NO_ENUM_LIMIT) {
+            compressor.setEnumLimit(enumLimit);
+        }
+        compressor.setColumnar(columnar);
+        compressor.setDeltaEncoding(delta);
+        compressor.setBinary(binary);
+        compressor.setDictionary(dictionary);
+        return compressor;
+    }
+
+    private static void decompressLines(String fileJson, String fileOutput, KeyDictionary dictionary)
+            throws IOException {
+        BufferedReader reader = null;
+        try {
+            InputStream in = fileJson.equals("-") ? System.in : new FileInputStream(fileJson);
+            reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+        } catch (FileNotFoundException ex) {
+            System.err.println("File " + fileJson + " not found!");
+            System.exit(-1);
+        }
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(fileOutput), "UTF-8"));
+        try {
+            Decompressor.decompressLines(reader, writer, dictionary);
+        } catch (Exception ex) {
+            System.err.println("Exception occured during decompression: " + ex);
+            System.exit(-1);
+        } finally {
+            writer.close();
+            reader.close();
+        }
+
+        System.out.println("Finished!");
+    }
+
+    // Scans, parses and writes on three threads, see PipelinedCompressor
+    private static void compressPipelined(String fileJson, String fileOutput, boolean byteLexer,
+                                          boolean mapped, Errors errors) throws IOException {
+        Closeable input = null;
+        java_cup.runtime.Scanner scanner = null;
+        try {
+            if (mapped) {
+                MappedInput mappedInput = new MappedInput(fileJson);
+                input = mappedInput;
+                scanner = new ByteLexer(mappedInput, errors);
+            } else if (byteLexer) {
+                scanner = new ByteLexer(Files.readAllBytes(Paths.get(fileJson)), errors);
+            } else {
+                Reader reader = new BufferedReader(new FileReader(fileJson));
+                input = reader;
+                scanner = new Yylex(reader, errors);
+            }
+        } catch (FileNotFoundException | NoSuchFileException ex) {
+            System.err.println("File " + fileJson + " not found!");
+            System.exit(-1);
+        }
+
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(fileOutput), 1 << 16);
+        try {
+            new PipelinedCompressor(scanner, errors).compress(out);
+        } catch (IOException ex) {
+            throw ex;
+        } catch (SyntaxError ex) {
+            // already reported
+            System.exit(-1);
+        } catch (Exception ex) {
+            System.err.println("Exception occured during parse: " + ex);
+            System.exit(-1);
+        } finally {
+            out.close();
+            if (input != null) {
+                input.close();
+            }
+        }
+
+        if (errors.fatalError) {
+            System.err.println("Confused by earlier errors: aborting");
+            System.exit(0);
+        }
+
+        System.out.println("Finished!");
+    }
+
+    // Reads the input twice and never holds more than one root-level
+    // element in memory, see StreamingCompressor
+    private static void compressStreaming(String fileJson, String fileOutput, boolean mapped,
+                                          Errors errors) throws IOException {
+        if (!new File(fileJson).isFile()) {
+            System.err.println("File " + fileJson + " not found!");
+            System.exit(-1);
+        }
+
+        OutputStream out = new FileOutputStream(fileOutput);
+        try {
+            StreamingCompressor compressor = new StreamingCompressor(fileJson, errors);
+            compressor.setMapped(mapped);
+            compressor.compress(out);
+        } catch (IOException ex) {
+            throw ex;
+        } catch (SyntaxError ex) {
+            // already reported
+            System.exit(-1);
+        } catch (Exception ex) {
+            System.err.println("Exception occured during parse: " + ex);
+            System.exit(-1);
+        } finally {
+            out.close();
+        }
+
+        if (errors.fatalError) {
+            System.err.println("Confused by earlier errors: aborting");
+            System.exit(0);
+        }
+
+        System.out.println("Finished!");
+    }
+
+    // Writes a dictionary of the keys in a sample file, see KeyDictionary
+    private static void train(String fileJson, String fileDict) throws IOException {
+        KeyDictionary dictionary = null;
+        try {
+            byte[] sample = Files.readAllBytes(Paths.get(fileJson));
+            dictionary = KeyDictionary.train(java.util.Collections.singletonList(sample),
+                                             KeyDictionary.DEFAULT_MAX_KEYS);
+        } catch (NoSuchFileException ex) {
+            System.err.println("File " + fileJson + " not found!");
+            System.exit(-1);
+        } catch (SyntaxError ex) {
+            System.err.println(fileJson + ": " + ex.getMessage());
+            System.exit(-1);
+        }
+
+        Writer writer = new OutputStreamWriter(new FileOutputStream(fileDict), "UTF-8");
+        try {
+            dictionary.save(writer);
+        } finally {
+            writer.close();
+        }
+
+        System.out.println("Finished! " + dictionary.size() + " keys");
+    }
+
+    private static KeyDictionary loadDictionary(String fileDict) {
+        try {
+            Reader reader = new InputStreamReader(new FileInputStream(fileDict), "UTF-8");
+            try {
+                return KeyDictionary.load(reader);
+            } finally {
+                reader.close();
+            }
+        } catch (IOException ex) {
+            System.err.println("Could not read dictionary " + fileDict + ": " + ex.getMessage());
+            System.exit(-1);
+            return null;
+        }
+    }
+
+    // Expands a file written by the compressor back into plain JSON
+    private static void decompress(String fileJson, String fileOutput, KeyDictionary dictionary)
+            throws IOException {
+        Reader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(fileJson), "UTF-8"));
+        } catch (FileNotFoundException ex) {
+            System.err.println("File " + fileJson + " not found!");
+            System.exit(-1);
+        }
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(fileOutput), "UTF-8"));
+        try {
+            Decompressor.decompress(reader, writer, dictionary);
+        } catch (Exception ex) {
+            System.err.println("Exception occured during decompression: " + ex);
+            System.exit(-1);
+        } finally {
+            writer.close();
+            reader.close();
+        }
+
+        System.out.println("Finished!");
+    }
+
+    // Only the given fields of each record, see ProjectionReader
+    private static void project(String fileJson, String fileOutput, List<String> fields,
+                                KeyDictionary dictionary) throws IOException {
+        Reader reader = null;
+        try {
+            reader = new InputStreamReader(new FileInputStream(fileJson), "UTF-8");
+        } catch (FileNotFoundException ex) {
+            System.err.println("File " + fileJson + " not found!");
+            System.exit(-1);
+        }
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(fileOutput), "UTF-8"));
+        try {
+            ProjectionReader.project(reader, writer, fields, dictionary);
+        } catch (Exception ex) {
+            System.err.println("Exception occured during decompression: " + ex);
+            System.exit(-1);
+        } finally {
+            writer.close();
+            reader.close();
+        }
+
+        System.out.println("Finished!");
+    }
+
+    private static void decompressBinary(String fileJson, String fileOutput) throws IOException {
+        InputStream in = null;
+        try {
+            in = new FileInputStream(fileJson);
+        } catch (FileNotFoundException ex) {
+            System.err.println("File " + fileJson + " not found!");
+            System.exit(-1);
+        }
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(fileOutput), "UTF-8"));
+        try {
+            BinaryReader.decompress(in, writer);
+        } catch (IOException ex) {
+            System.err.println("Exception occured during decompression: " + ex);
+            System.exit(-1);
+        } finally {
+            writer.close();
+            in.close();
+        }
+
+        System.out.println("Finished!");
+    }
+}
@@ -0,0 +1,133 @@
+package jsoncompressor;
+
+import java.io.*;
+import java.util.*;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
+
+// **********************************************************************
+// KeyDictionary
+//
+// Keys shared by many documents, known to both sides ahead of time. A
+// header written with a dictionary names its keys by their position in
+// the dictionary instead of spelling them out, and keys that are not in
+// it are written as usual. Keys keep the order they would have without a
+// dictionary, and a header that is exactly the first n keys of the
+// dictionary is written as [-n].
+//
+// The most common keys of the training documents come first, so they get
+// the shortest ids. Saved as {"keys": [...]}.
+// **********************************************************************
+public class KeyDictionary {
+    public static final int DEFAULT_MAX_KEYS = 1024;
+
+    private SymbolTable keys;
+
+    public KeyDictionary(List<String> keys) {
+        this.keys = new SymbolTable();
+        for (String key : keys) {
+            this.keys.addKey(key);
+        }
+    }
+
+    public int size() {
+        return keys.size();
+    }
+
+    // the id of key, or -1 if it is not in the dictionary
+    public int idOf(String key) {
+        return keys.indexOf(key);
+    }
+
+    public String keyAt(int id) {
+        if (id < 0 || id >= keys.size()) {
+            throw new IllegalArgumentException("key id " + id + " is not in the dictionary");
+        }
+        return keys.keyAt(id);
+    }
+
+    // ******************************************************************
+    // Training
+    // ******************************************************************
+
+    // Trains on sample JSON documents, see fromDocuments
+    public static KeyDictionary train(List<byte[]> samples, int maxKeys) throws IOException, SyntaxError {
+        List<Json> documents = new ArrayList<Json>(samples.size());
+        for (byte[] sample : samples) {
+            Errors errors = new Errors(null);
+            documents.add(Compressor.parseStrict(new ByteLexer(sample, errors), errors, null));
+        }
+        return fromDocuments(documents, maxKeys);
+    }
+
+    // The keys of every object in the documents, most common first, ties
+    // in order of first appearance, at most maxKeys of them
+    static KeyDictionary fromDocuments(List<Json> documents, int maxKeys) {
+        final SymbolTable seen = new SymbolTable();
+        final Map<String, Integer> counts = new HashMap<String, Integer>();
+        LinkedList<Object> pending = new LinkedList<Object>();
+        for (Json document : documents) {
+            pending.push(document.content());
+        }
+        while (!pending.isEmpty()) {
+            Object node = pending.pop();
+            if (node instanceof JsonObjectValue) {
+                node = ((JsonObjectValue)node).obj;
+            }
+            else if (node instanceof JsonArrayValue) {
+                node = ((JsonArrayValue)node).array;
+            }
+
+            if (node instanceof JsonObject) {
+                for (JsonPair pair : ((JsonObject)node).pairList) {
+                    seen.addKey(pair.key);
+                    Integer count = counts.get(pair.key);
+                    counts.put(pair.key, count == null ? 1 : count + 1);
+                    pending.push(pair.value);
+                }
+            }
+            else if (node instanceof JsonArray) {
+                for (JsonValue value : ((JsonArray)node).valueList) {
+                    pending.push(value);
+                }
+            }
+        }
+
+        List<String> keys = new ArrayList<String>(seen.size());
+        for (int i = 0; i < seen.size(); ++i) {
+            keys.add(seen.keyAt(i));
+        }
+        Collections.sort(keys, new Comparator<String>() {
+            public int compare(String a, String b) {
+                int byCount = counts.get(b) - counts.get(a);
+                return byCount != 0 ? byCount : seen.indexOf(a) - seen.indexOf(b);
+            }
+        });
+        return new KeyDictionary(keys.subList(0, Math.min(maxKeys, keys.size())));
+    }
+
+    // ******************************************************************
+    // Persistence
+    // ******************************************************************
+    public void save(Writer out) throws IOException {
+        JSONObject json = new JSONObject();
+        json.put("keys", keys.toJsonArray());
+        json.writeJSONString(out);
+        out.flush();
+    }
+
+    public static KeyDictionary load(Reader in) throws IOException {
+        Object json = JSONValue.parse(in);
+        if (!(json instanceof Map) || !(((Map)json).get("keys") instanceof List)) {
+            throw new IOException("not a key dictionary: expected {\"keys\": [...]}");
+        }
+        List<String> keys = new ArrayList<String>();
+        for (Object key : (List)((Map)json).get("keys")) {
+            if (!(key instanceof String)) {
+                throw new IOException("not a key dictionary: key " + key + " is not a string");
+            }
+            keys.add((String)key);
+        }
+        return new KeyDictionary(keys);
+    }
+}
@@ -0,0 +1,178 @@
+package jsoncompressor;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// **********************************************************************
+// LineCompressor
+//
+// Compresses newline-delimited JSON, one value per line as in log files,
+// in blocks: every batchSize values become one compressed document, the
+// [header, rows...] of the array of those values, written as a line of
+// its own and flushed right away. Memory is bounded by one batch.
+//
+// With maxDelay above 0, lines are read on a separate thread and a batch
+// is also written once its first line has waited maxDelay milliseconds,
+// so a slow log tail still comes out promptly. Blank lines are skipped.
+// **********************************************************************
+class LineCompressor {
+    // stands for the end of the input in the queue of lines
+    private static final byte[] END = new byte[0];
+
+    private Compressor compressor;
+    private int batchSize;
+    private long maxDelay;
+    private volatile IOException readFailure;
+
+    public LineCompressor(Compressor compressor, int batchSize, long maxDelay) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batch size must be at least 1: " + batchSize);
+        }
+        this.compressor = compressor;
+        this.batchSize = batchSize;
+        this.maxDelay = maxDelay;
+    }
+
+    public void compress(InputStream in, OutputStream out) throws IOException, SyntaxError {
+        InputStream input = new BufferedInputStream(in, 1 << 16);
+        if (maxDelay <= 0) {
+            compressBatches(input, out);
+        }
+        else {
+            compressTimed(input, out);
+        }
+    }
+
+    private void compressBatches(InputStream in, OutputStream out) throws IOException, SyntaxError {
+        JsonValueList batch = new JsonValueList();
+        int lineNumber = 0;
+        byte[] line;
+        while ((line = readLine(in)) != null) {
+            lineNumber++;
+            if (isBlank(line)) {
+                continue;
+            }
+            batch.add(compressor.parseLine(line, lineNumber));
+            if (batch.size() == batchSize) {
+                writeLine(batch, out);
+                batch = new JsonValueList();
+            }
+        }
+        if (!batch.isEmpty()) {
+            writeLine(batch, out);
+        }
+    }
+
+    private void compressTimed(final InputStream in, OutputStream out) throws IOException, SyntaxError {
+        final BlockingQueue<byte[]> lines = new ArrayBlockingQueue<byte[]>(batchSize);
+        Thread reader = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    byte[] line;
+                    while ((line = readLine(in)) != null) {
+                        lines.put(line);
+                    }
+                }
+                catch (IOException e) {
+                    readFailure = e;
+                }
+                catch (InterruptedException e) {
+                    return;
+                }
+                try {
+                    lines.put(END);
+                }
+                catch (InterruptedException e) {
+                    // the writer has stopped
+                }
+            }
+        }, "line reader");
+        reader.setDaemon(true);
+        reader.start();
+
+        try {
+            JsonValueList batch = new JsonValueList();
+            long deadline = 0;
+            int lineNumber = 0;
+            while (true) {
+                byte[] line;
+                if (batch.isEmpty()) {
+                    line = lines.take();
+                }
+                else {
+                    line = lines.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                }
+
+                // timed out, or the end
+                if ((line == null || line == END) && !batch.isEmpty()) {
+                    writeLine(batch, out);
+                    batch = new JsonValueList();
+                }
+                if (line == END) {
+                    break;
+                }
+                if (line == null) {
+                    continue;
+                }
+
+                lineNumber++;
+                if (isBlank(line)) {
+                    continue;
+                }
+                if (batch.isEmpty()) {
+                    deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxDelay);
+                }
+                batch.add(compressor.parseLine(line, lineNumber));
+                if (batch.size() == batchSize) {
+                    writeLine(batch, out);
+                    batch = new JsonValueList();
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            throw new InterruptedIOException("interrupted while waiting for input");
+        }
+        finally {
+            reader.interrupt();
+        }
+
+        if (readFailure != null) {
+            throw readFailure;
+        }
+    }
+
+    private void writeLine(JsonValueList batch, OutputStream out) throws IOException {
+        compressor.writeBlock(batch, out);
+        out.write('\n');
+        out.flush();
+    }
+
+    // The next line without its line break, or null at the end
+    private static byte[] readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+        int b;
+        while ((b = in.read()) != -1 && b != '\n') {
+            line.write(b);
+        }
+        if (b == -1 && line.size() == 0) {
+            return null;
+        }
+        byte[] bytes = line.toByteArray();
+        if (bytes.length > 0 && bytes[bytes.length - 1] == '\r') {
+            bytes = Arrays.copyOf(bytes, bytes.length - 1);
+        }
+        return bytes;
+    }
+
+    private static boolean isBlank(byte[] line) {
+        for (byte b : line) {
+            if (b != ' ' && b != '\t') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,59 @@
+package jsoncompressor;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+
+// **********************************************************************
+// MappedInput
+//
+// A read-only file mapped one window at a time. A single MappedByteBuffer
+// cannot be larger than 2 GB, so ByteLexer scans a window and asks for
+// the next one, starting at the token it was in the middle of, when it
+// runs off the end.
+// **********************************************************************
+class MappedInput implements Closeable {
+    static final int DEFAULT_WINDOW = 1 << 30;
+
+    private FileChannel channel;
+    private long size;
+    private int window;
+    private long base;
+
+    public MappedInput(String fileName) throws IOException {
+        this(fileName, DEFAULT_WINDOW);
+    }
+
+    public MappedInput(String fileName, int window) throws IOException {
+        channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+        size = channel.size();
+        this.window = window;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    // maps up to one window starting at the given file offset
+    public ByteBuffer map(long offset) throws IOException {
+        base = offset;
+        long length = Math.min(window, size - offset);
+        return channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+    }
+
+    // file offset of byte 0 of the current window
+    public long base() {
+        return base;
+    }
+
+    // true if the current window, of the given length, reaches the end of the file
+    public boolean isLast(int length) {
+        return base + length >= size;
+    }
+
+    // the channel can be closed while windows are still in use
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,397 @@
+package jsoncompressor;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java_cup.runtime.*;
+
+// **********************************************************************
+// PipelinedCompressor
+//
+// Compresses in three stages on three threads, so scanning, building the
+// elements and writing them overlap instead of running one after the
+// other:
+//
+//  lexer   pulls tokens from the scanner and passes them on in batches
+//  parser  builds one root-level element at a time from those tokens
+//          (ValueParser) and passes the elements on in batches
+//  writer  (the calling thread) writes each element as soon as it
+//          arrives
+//
+// The stages are linked by RingBuffers, so each is at most a few batches
+// ahead of the next. The header has to come first, but its keys are only
+// all known at the end: as in Json.compile, the writer adds the keys of
+// each record as it comes, writes the rows into memory and puts the
+// header in front of them at the end. The output is identical to
+// Json.compile, and only the compressed rows are held rather than the
+// whole Ast; past Spool.MAX_MEMORY bytes they go to a temporary file.
+// Each element is written once; a nested array that came before the
+// first record is wrapped as {"array": [...]} on the way out if needed.
+// **********************************************************************
+class PipelinedCompressor {
+    private static final int TOKEN_BATCH = 1024;
+    private static final int ELEMENT_BATCH = 64;
+    private static final int RING_SIZE = 16;
+
+    private java_cup.runtime.Scanner scanner;
+    private Errors errors;
+    private RingBuffer<Symbol[]> tokens = new RingBuffer<Symbol[]>(RING_SIZE);
+    private RingBuffer<JsonValue[]> elements = new RingBuffer<JsonValue[]>(RING_SIZE);
+    private AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    // set before the parser passes on a root object as the only element
+    private volatile boolean rootObject;
+    // what the scanner threw, set before the last batch of tokens is
+    // passed on, so the parser gets it where the batch mode would have
+    private volatile Exception lexFailure;
+
+    public PipelinedCompressor(java_cup.runtime.Scanner scanner, Errors errors) {
+        this.scanner = scanner;
+        this.errors = errors;
+    }
+
+    // Throws what the first stage to fail threw, like the batch mode
+    public void compress(OutputStream out) throws Exception {
+        Thread lexer = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    lex();
+                }
+                catch (Throwable t) {
+                    fail(t);
+                }
+            }
+        }, "lexer");
+        Thread parser = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    parse();
+                }
+                catch (Throwable t) {
+                    fail(t);
+                }
+            }
+        }, "parser");
+
+        lexer.start();
+        parser.start();
+        try {
+            write(out);
+        }
+        catch (Throwable t) {
+            fail(t);
+        }
+        finally {
+            lexer.join();
+            parser.join();
+        }
+
+        Throwable t = failure.get();
+        if (t instanceof Exception) {
+            throw (Exception)t;
+        }
+        if (t != null) {
+            throw (Error)t;
+        }
+    }
+
+    private void fail(Throwable t) {
+        failure.compareAndSet(null, t);
+        tokens.abort();
+        elements.abort();
+    }
+
+    // ******************************************************************
+    // Stages
+    // ******************************************************************
+    private void lex() throws Exception {
+        Symbol[] batch = new Symbol[TOKEN_BATCH];
+        int size = 0;
+        try {
+            while (true) {
+                Symbol tok = scanner.next_token();
+                if (tok.value != null && tok.value.getClass() == TokenVal.class) {
+                    // ByteLexer reuses these, and the parser reads them later
+                    TokenVal val = (TokenVal)tok.value;
+                    tok.value = new TokenVal(val.linenum, val.charnum);
+                }
+                batch[size++] = tok;
+                if (tok.sym == sym.EOF) {
+                    break;
+                }
+                if (size == batch.length) {
+                    tokens.put(batch);
+                    batch = new Symbol[TOKEN_BATCH];
+                    size = 0;
+                }
+            }
+        }
+        catch (Exception e) {
+            lexFailure = e;
+        }
+        tokens.put(batch);
+        tokens.close();
+    }
+
+    private void parse() throws Exception {
+        ValueParser parser = new ValueParser(new RingScanner(), errors);
+        Symbol tok = parser.next();
+        if (tok.sym == sym.LCURLY) {
+            JsonObject obj = parser.parseObject();
+            parser.expect(parser.next(), sym.EOF);
+            rootObject = true;
+            elements.put(new JsonValue[] { new JsonObjectValue(obj) });
+            elements.close();
+            return;
+        }
+
+        parser.expect(tok, sym.LSQBRACKET);
+        JsonValue[] batch = new JsonValue[ELEMENT_BATCH];
+        int size = 0;
+        tok = parser.next();
+        if (tok.sym != sym.RSQBRACKET) {
+            while (true) {
+                batch[size++] = parser.parseValue(tok);
+                if (size == batch.length) {
+                    elements.put(batch);
+                    batch = new JsonValue[ELEMENT_BATCH];
+                    size = 0;
+                }
+                tok = parser.next();
+                if (tok.sym == sym.RSQBRACKET) {
+                    break;
+                }
+                parser.expect(tok, sym.COMMA);
+                tok = parser.next();
+            }
+        }
+        parser.expect(parser.next(), sym.EOF);
+        if (size > 0) {
+            elements.put(Arrays.copyOf(batch, size));
+        }
+        elements.close();
+    }
+
+    private void write(OutputStream out) throws IOException {
+        JsonValue[] batch = elements.take();
+        if (rootObject) {
+            HPackWriter writer = new HPackWriter(out);
+            writer.writeJson(new Json(((JsonObjectValue)batch[0]).obj));
+            writer.flush();
+            return;
+        }
+
+        SymbolTable table = new SymbolTable();
+        Schema schema = new Schema(table);
+        Spool rows = new Spool();
+        // A nested array is written as {"array": [...]} once the header
+        // has keys. Whether it will is not known before the first record,
+        // so until then nested arrays are written as in an array without
+        // keys, and where each starts and ends is kept so that it can be
+        // wrapped on the way out if a record came later.
+        List<long[]> unwrapped = new ArrayList<long[]>();
+        try {
+            HPackWriter rowWriter = new HPackWriter(rows);
+            for (; batch != null; batch = elements.take()) {
+                for (JsonValue value : batch) {
+                    if (value instanceof JsonObjectValue) {
+                        HPackWriter.addKeys(((JsonObjectValue)value).obj, table);
+                    }
+                    rowWriter.writeByte(',');
+                    if (value instanceof JsonArrayValue && table.size() > 0) {
+                        rowWriter.writeNestedArray(((JsonArrayValue)value).array);
+                    }
+                    else if (value instanceof JsonArrayValue) {
+                        long start = rowWriter.position();
+                        rowWriter.writeElement(value, schema);
+                        unwrapped.add(new long[] { start, rowWriter.position() });
+                    }
+                    else {
+                        rowWriter.writeElement(value, schema);
+                    }
+                }
+            }
+            rowWriter.flush();
+
+            HPackWriter writer = new HPackWriter(out);
+            writer.writeByte('[');
+            writer.writeHeader(schema);
+            writer.flush();
+            if (table.size() > 0 && !unwrapped.isEmpty()) {
+                ArrayWrapper wrapper = new ArrayWrapper(out, unwrapped);
+                rows.writeTo(wrapper);
+                wrapper.finish();
+            }
+            else {
+                rows.writeTo(out);
+            }
+            out.write(']');
+            out.flush();
+        }
+        finally {
+            rows.close();
+        }
+    }
+
+    // Passes the rows on, with {"array": in front of and } after each of
+    // the given ranges of them
+    private static class ArrayWrapper extends FilterOutputStream {
+        private static final byte[] OPEN = { '{', '"', 'a', 'r', 'r', 'a', 'y', '"', ':' };
+
+        private List<long[]> ranges;
+        // the next range, and whether its start has been passed
+        private int next;
+        private boolean inside;
+        private long offset;
+
+        ArrayWrapper(OutputStream out, List<long[]> ranges) {
+            super(out);
+            this.ranges = ranges;
+        }
+
+        public void write(int b) throws IOException {
+            mark();
+            out.write(b);
+            offset++;
+        }
+
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                mark();
+                long boundary = next < ranges.size() ? ranges.get(next)[inside ? 1 : 0] : Long.MAX_VALUE;
+                int n = (int)Math.min(len, boundary - offset);
+                out.write(b, off, n);
+                offset += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        // closes a range that ends with the rows
+        public void finish() throws IOException {
+            mark();
+        }
+
+        // writes what goes at offset
+        private void mark() throws IOException {
+            while (next < ranges.size() && ranges.get(next)[inside ? 1 : 0] == offset) {
+                if (inside) {
+                    out.write('}');
+                    next++;
+                }
+                else {
+                    out.write(OPEN);
+                }
+                inside = !inside;
+            }
+        }
+    }
+
+    // ******************************************************************
+    // The parser's end of the token buffer
+    // ******************************************************************
+    private class RingScanner implements java_cup.runtime.Scanner {
+        private Symbol[] batch = new Symbol[0];
+        private int next;
+
+        public Symbol next_token() throws Exception {
+            if (next == batch.length || batch[next] == null) {
+                batch = tokens.take();
+                next = 0;
+                if (batch == null) {
+                    // the lexer failed here, or this is past EOF
+                    batch = new Symbol[0];
+                    if (lexFailure != null) {
+                        throw lexFailure;
+                    }
+                    return new Symbol(sym.EOF);
+                }
+            }
+            return batch[next++];
+        }
+    }
+
+    // Written rows, in chunks in memory up to MAX_MEMORY bytes and in a
+    // temporary file after that, which close deletes
+    private static class Spool extends OutputStream {
+        static final long MAX_MEMORY = 64L << 20;
+        private static final int CHUNK_SIZE = 1 << 16;
+
+        private List<byte[]> chunks = new ArrayList<byte[]>();
+        private byte[] chunk = new byte[CHUNK_SIZE];
+        private int pos;
+        private long held;
+        private File file;
+        private OutputStream spill;
+
+        public void write(int b) throws IOException {
+            if (pos == chunk.length) {
+                nextChunk();
+            }
+            chunk[pos++] = (byte)b;
+        }
+
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (pos == chunk.length) {
+                    nextChunk();
+                }
+                int n = Math.min(len, chunk.length - pos);
+                System.arraycopy(b, off, chunk, pos, n);
+                pos += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        // the current chunk is full
+        private void nextChunk() throws IOException {
+            if (spill != null) {
+                spill.write(chunk, 0, pos);
+                pos = 0;
+                return;
+            }
+            chunks.add(chunk);
+            held += chunk.length;
+            if (held >= MAX_MEMORY) {
+                file = File.createTempFile("hpack", ".rows");
+                spill = new FileOutputStream(file);
+                for (byte[] full : chunks) {
+                    spill.write(full);
+                }
+                chunks.clear();
+                pos = 0;
+                return;
+            }
+            chunk = new byte[CHUNK_SIZE];
+            pos = 0;
+        }
+
+        public void writeTo(OutputStream out) throws IOException {
+            if (spill == null) {
+                for (byte[] full : chunks) {
+                    out.write(full);
+                }
+                out.write(chunk, 0, pos);
+                return;
+            }
+            spill.write(chunk, 0, pos);
+            pos = 0;
+            spill.close();
+            spill = null;
+            Files.copy(file.toPath(), out);
+        }
+
+        public void close() throws IOException {
+            chunks.clear();
+            if (spill != null) {
+                spill.close();
+                spill = null;
+            }
+            if (file != null) {
+                Files.deleteIfExists(file.toPath());
+                file = null;
+            }
+        }
+    }
+}
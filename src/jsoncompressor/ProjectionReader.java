@@ -0,0 +1,568 @@
+package jsoncompressor;
+
+import java.io.*;
+import java.util.*;
+import org.json.simple.JSONValue;
+import org.json.simple.parser.ParseException;
+
+// **********************************************************************
+// ProjectionReader
+//
+// Reads only some fields of the records in compressed output, without
+// expanding the rest. Fields are paths of keys joined by dots, like
+// "user.name". The first key of each path is looked up in the root
+// header once; after that a row is scanned value by value and only the
+// values at those positions are parsed, everything else is skipped in
+// place without building strings, numbers or lists for it. Columnar
+// blocks are read the same way, one column at a time.
+//
+// A selected value is expanded like Decompressor does, and the rest of
+// its path is followed through the objects that gives. Only a key with a
+// nested header in the header ({"key": [...]}, level 1 and up) expands
+// to an object, so at level 0 every dotted path comes back as null, as
+// does a path whose key is not in the header. Elements of the root array
+// are told apart as Decompressor does: lists are records, except under a
+// header without keys where only [] is (the empty record); nested arrays
+// and literals are skipped.
+// **********************************************************************
+public class ProjectionReader {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private Reader reader;
+    private char[] buf = new char[BUFFER_SIZE];
+    private int pos;
+    private int limit;
+    private long consumed; // chars before buf[0], for error positions
+
+    private Decompressor expander;
+    private List<?> header;
+    private String[][] paths;
+    // per path, its position in the header or -1
+    private int[] positions;
+    // per header position, whether any path starts there
+    private boolean[] selected;
+    private boolean finished;
+    private Iterator<Object[]> pending = Collections.emptyIterator();
+
+    public ProjectionReader(Reader reader, List<String> paths) throws IOException, ParseException {
+        this(reader, paths, null);
+    }
+
+    public ProjectionReader(Reader reader, List<String> paths, KeyDictionary dictionary)
+            throws IOException, ParseException {
+        this.reader = reader;
+        expander = new Decompressor(dictionary);
+
+        expect('[');
+        Object first = readValue();
+        if (!expander.isHeader(first)) {
+            throw new ParseException(ParseException.ERROR_UNEXPECTED_TOKEN);
+        }
+        header = expander.resolve(first);
+        resolvePaths(paths);
+    }
+
+    public List<?> header() {
+        return header;
+    }
+
+    public boolean hasNext() throws IOException, ParseException {
+        while (!pending.hasNext()) {
+            if (finished) {
+                return false;
+            }
+            int c = skipSpace();
+            if (c == ']') {
+                ++pos;
+                finished = true;
+                return false;
+            }
+            if (c != ',') {
+                throw unexpected(c);
+            }
+            ++pos;
+            readElement();
+        }
+        return true;
+    }
+
+    // The values of the paths, in the order they were given
+    public Object[] next() throws IOException, ParseException {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return pending.next();
+    }
+
+    // Writes the selected fields of each record to out as an array of
+    // objects keyed by path
+    public static void project(Reader in, Writer out, List<String> paths, KeyDictionary dictionary)
+            throws IOException, ParseException {
+        ProjectionReader projection = new ProjectionReader(in, paths, dictionary);
+
+        out.write('[');
+        boolean first = true;
+        while (projection.hasNext()) {
+            Object[] values = projection.next();
+            Map<String, Object> record = new LinkedHashMap<String, Object>();
+            for (int i = 0; i < values.length; ++i) {
+                record.put(paths.get(i), values[i]);
+            }
+            if (!first) {
+                out.write(',');
+            }
+            JSONValue.writeJSONString(record, out);
+            first = false;
+        }
+        out.write(']');
+        out.flush();
+    }
+
+    private void resolvePaths(List<String> fields) {
+        paths = new String[fields.size()][];
+        positions = new int[fields.size()];
+        selected = new boolean[header.size()];
+        Map<String, Integer> columns = new HashMap<String, Integer>();
+        for (int i = 0; i < header.size(); ++i) {
+            columns.put(Decompressor.keyName(header.get(i)), i);
+        }
+        for (int i = 0; i < paths.length; ++i) {
+            paths[i] = fields.get(i).split("\\.", -1);
+            Integer column = columns.get(paths[i][0]);
+            positions[i] = column == null ? -1 : column;
+            if (column != null) {
+                selected[column] = true;
+            }
+        }
+    }
+
+    // ******************************************************************
+    // Elements
+    // ******************************************************************
+    private void readElement() throws IOException, ParseException {
+        int c = skipSpace();
+        if (c == '[' && header.isEmpty()) {
+            ++pos;
+            if (skipSpace() == ']') {
+                ++pos;
+                pending = Collections.singletonList(project(new Object[0])).iterator();
+            }
+            else {
+                // a nested array
+                skipRest(']');
+            }
+        }
+        else if (c == '[') {
+            ++pos;
+            pending = Collections.singletonList(project(readRow())).iterator();
+        }
+        else if (c == '{') {
+            // a columnar block, or {"array": [...]}
+            ++pos;
+            pending = readColumns().iterator();
+        }
+        else {
+            skipValue();
+        }
+    }
+
+    // The selected values of a row by header position
+    private Object[] readRow() throws IOException, ParseException {
+        Object[] values = new Object[header.size()];
+        if (skipSpace() == ']') {
+            ++pos;
+            return values;
+        }
+        for (int i = 0; ; ++i) {
+            if (i >= header.size()) {
+                throw new IllegalArgumentException("record has more values than the header has keys");
+            }
+            if (selected[i]) {
+                values[i] = readValue();
+            }
+            else {
+                skipValue();
+            }
+            int c = skipSpace();
+            ++pos;
+            if (c == ']') {
+                return values;
+            }
+            if (c != ',') {
+                throw unexpected(c);
+            }
+        }
+    }
+
+    // {"rows": n, "columns": [column, ...]}, keeping selected columns only.
+    // The first column is always read, so the number of records built is
+    // checked against values actually in the input, as in Decompressor.
+    private List<Object[]> readColumns() throws IOException, ParseException {
+        Object rowCount = null;
+        List<List<?>> columns = new ArrayList<List<?>>(Collections.<List<?>>nCopies(header.size(), null));
+        List<?> first = null;
+        boolean columnar = false;
+        if (skipSpace() == '}') {
+            ++pos;
+            return Collections.emptyList();
+        }
+        while (true) {
+            String key = readString();
+            expect(':');
+            if (key.equals("columns") && skipSpace() == '[') {
+                ++pos;
+                first = readColumnList(columns);
+                columnar = true;
+            }
+            else if (key.equals("rows")) {
+                rowCount = readValue();
+            }
+            else {
+                skipValue();
+            }
+            int c = skipSpace();
+            ++pos;
+            if (c == '}') {
+                break;
+            }
+            if (c != ',') {
+                throw unexpected(c);
+            }
+        }
+        if (!columnar) {
+            // {"array": [...]}, a nested array, so not records
+            return Collections.emptyList();
+        }
+        if (!(rowCount instanceof Long) || (Long)rowCount < 0) {
+            throw new IllegalArgumentException("not a row count: " + rowCount);
+        }
+        long rows = (Long)rowCount;
+        if (first == null ? rows > 0 : first.size() != rows) {
+            throw new IllegalArgumentException("column 0 does not have " + rows + " values");
+        }
+
+        int size = first == null ? 0 : first.size();
+        List<Object[]> records = new ArrayList<Object[]>(size);
+        for (int r = 0; r < size; ++r) {
+            Object[] values = new Object[header.size()];
+            for (int i = 0; i < columns.size(); ++i) {
+                List<?> column = columns.get(i);
+                if (column != null) {
+                    if (column.size() != rows) {
+                        throw new IllegalArgumentException("column " + i + " has "
+                            + column.size() + " values, expected " + rows);
+                    }
+                    values[i] = column.get(r);
+                }
+            }
+            records.add(project(values));
+        }
+        return records;
+    }
+
+    // Reads the selected columns into columns and returns the first one,
+    // or null if there are none
+    private List<?> readColumnList(List<List<?>> columns) throws IOException, ParseException {
+        List<?> first = null;
+        if (skipSpace() == ']') {
+            ++pos;
+            return first;
+        }
+        for (int i = 0; ; ++i) {
+            if (i >= header.size()) {
+                throw new IllegalArgumentException("block has more columns than the header has keys");
+            }
+            if (selected[i] || i == 0) {
+                List<?> column = toColumn(readValue());
+                if (selected[i]) {
+                    columns.set(i, column);
+                }
+                if (i == 0) {
+                    first = column;
+                }
+            }
+            else {
+                skipValue();
+            }
+            int c = skipSpace();
+            ++pos;
+            if (c == ']') {
+                return first;
+            }
+            if (c != ',') {
+                throw unexpected(c);
+            }
+        }
+    }
+
+    private static List<?> toColumn(Object column) {
+        if (column instanceof Map) {
+            return Decompressor.undelta((Map<?, ?>)column);
+        }
+        if (!(column instanceof List)) {
+            throw new IllegalArgumentException("not a column: " + column);
+        }
+        return (List<?>)column;
+    }
+
+    // The values of the paths, from the selected values of a record
+    private Object[] project(Object[] values) {
+        Object[] result = new Object[paths.length];
+        Object[] expanded = new Object[values.length];
+        boolean[] done = new boolean[values.length];
+        for (int i = 0; i < paths.length; ++i) {
+            int column = positions[i];
+            if (column < 0) {
+                continue;
+            }
+            if (!done[column]) {
+                expanded[column] = expander.expandField(header.get(column), values[column]);
+                done[column] = true;
+            }
+            Object value = expanded[column];
+            for (int j = 1; j < paths[i].length && value != null; ++j) {
+                value = value instanceof Map ? ((Map<?, ?>)value).get(paths[i][j]) : null;
+            }
+            result[i] = value;
+        }
+        return result;
+    }
+
+    // ******************************************************************
+    // Scanning
+    // ******************************************************************
+
+    // A whole value, with the literals JSONParser would give
+    private Object readValue() throws IOException, ParseException {
+        int c = skipSpace();
+        switch (c) {
+        case '"':
+            return readString();
+        case '[':
+            ++pos;
+            List<Object> array = new ArrayList<Object>();
+            if (skipSpace() == ']') {
+                ++pos;
+                return array;
+            }
+            while (true) {
+                array.add(readValue());
+                c = skipSpace();
+                ++pos;
+                if (c == ']') {
+                    return array;
+                }
+                if (c != ',') {
+                    throw unexpected(c);
+                }
+            }
+        case '{':
+            ++pos;
+            Map<String, Object> object = new LinkedHashMap<String, Object>();
+            if (skipSpace() == '}') {
+                ++pos;
+                return object;
+            }
+            while (true) {
+                String key = readString();
+                expect(':');
+                object.put(key, readValue());
+                c = skipSpace();
+                ++pos;
+                if (c == '}') {
+                    return object;
+                }
+                if (c != ',') {
+                    throw unexpected(c);
+                }
+            }
+        default:
+            String literal = readLiteral();
+            if (literal.equals("null")) {
+                return null;
+            }
+            if (literal.equals("true")) {
+                return Boolean.TRUE;
+            }
+            if (literal.equals("false")) {
+                return Boolean.FALSE;
+            }
+            try {
+                if (literal.indexOf('.') >= 0 || literal.indexOf('e') >= 0 || literal.indexOf('E') >= 0) {
+                    return Double.valueOf(literal);
+                }
+                return Long.valueOf(literal);
+            } catch (NumberFormatException ex) {
+                throw unexpected(c);
+            }
+        }
+    }
+
+    private String readString() throws IOException, ParseException {
+        int c = skipSpace();
+        if (c != '"') {
+            throw unexpected(c);
+        }
+        ++pos;
+        StringBuilder s = new StringBuilder();
+        while (true) {
+            c = read();
+            if (c == '"') {
+                return s.toString();
+            }
+            if (c != '\\') {
+                s.append((char)c);
+                continue;
+            }
+            c = read();
+            switch (c) {
+            case 'b': s.append('\b'); break;
+            case 'f': s.append('\f'); break;
+            case 'n': s.append('\n'); break;
+            case 'r': s.append('\r'); break;
+            case 't': s.append('\t'); break;
+            case 'u':
+                int code = 0;
+                for (int i = 0; i < 4; ++i) {
+                    int digit = Character.digit(read(), 16);
+                    if (digit < 0) {
+                        throw unexpected('u');
+                    }
+                    code = code * 16 + digit;
+                }
+                s.append((char)code);
+                break;
+            default: s.append((char)c); break;
+            }
+        }
+    }
+
+    // A number or true, false, null, as it is written
+    private String readLiteral() throws IOException, ParseException {
+        StringBuilder s = new StringBuilder();
+        int c;
+        while ((c = peek()) != -1 && isLiteralChar(c)) {
+            s.append((char)c);
+            ++pos;
+        }
+        if (s.length() == 0) {
+            throw unexpected(c);
+        }
+        return s.toString();
+    }
+
+    // Moves past a value without building anything
+    private void skipValue() throws IOException, ParseException {
+        int c = skipSpace();
+        if (c == '"') {
+            ++pos;
+            skipString();
+        }
+        else if (c == '[') {
+            ++pos;
+            skipRest(']');
+        }
+        else if (c == '{') {
+            ++pos;
+            skipRest('}');
+        }
+        else {
+            int n = 0;
+            while ((c = peek()) != -1 && isLiteralChar(c)) {
+                ++pos;
+                ++n;
+            }
+            if (n == 0) {
+                throw unexpected(c);
+            }
+        }
+    }
+
+    // Moves past the rest of an array or object whose opening bracket
+    // has been read
+    private void skipRest(int close) throws IOException, ParseException {
+        int depth = 1;
+        while (depth > 0) {
+            int c = read();
+            if (c == '"') {
+                skipString();
+            }
+            else if (c == '[' || c == '{') {
+                ++depth;
+            }
+            else if (c == ']' || c == '}') {
+                --depth;
+            }
+        }
+    }
+
+    // after the opening quote
+    private void skipString() throws IOException, ParseException {
+        while (true) {
+            int c = read();
+            if (c == '"') {
+                return;
+            }
+            if (c == '\\') {
+                read();
+            }
+        }
+    }
+
+    private static boolean isLiteralChar(int c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'z') || c == '-' || c == '+' || c == '.'
+            || c == 'E';
+    }
+
+    private void expect(int expected) throws IOException, ParseException {
+        int c = skipSpace();
+        if (c != expected) {
+            throw unexpected(c);
+        }
+        ++pos;
+    }
+
+    private ParseException unexpected(int c) {
+        if (c == -1) {
+            return new ParseException((int)(consumed + pos), ParseException.ERROR_UNEXPECTED_EXCEPTION,
+                                      "end of input");
+        }
+        return new ParseException((int)(consumed + pos), ParseException.ERROR_UNEXPECTED_CHAR,
+                                  Character.valueOf((char)c));
+    }
+
+    // The next char that is not white space, without moving past it
+    private int skipSpace() throws IOException {
+        int c;
+        while ((c = peek()) == ' ' || c == '\t' || c == '\n' || c == '\r') {
+            ++pos;
+        }
+        return c;
+    }
+
+    private int peek() throws IOException {
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+        return buf[pos];
+    }
+
+    private int read() throws IOException, ParseException {
+        if (pos == limit && !fill()) {
+            throw unexpected(-1);
+        }
+        return buf[pos++];
+    }
+
+    private boolean fill() throws IOException {
+        consumed += limit;
+        pos = 0;
+        limit = 0;
+        int n = reader.read(buf, 0, buf.length);
+        if (n <= 0) {
+            return false;
+        }
+        limit = n;
+        return true;
+    }
+}
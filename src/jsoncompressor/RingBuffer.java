@@ -0,0 +1,87 @@
+package jsoncompressor;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// **********************************************************************
+// RingBuffer
+//
+// A bounded queue between exactly one producer thread and one consumer
+// thread, without locks. Each side only ever writes its own counter, and
+// an item is published by the ordered write of the tail after its slot
+// has been filled. A side that finds the buffer full (or empty) spins
+// for a while, then parks for short intervals until the other side has
+// caught up.
+//
+// close() ends the stream: take() returns null once the rest has been
+// taken. abort() makes every waiting or later put and take throw, so a
+// failing stage can stop the others.
+// **********************************************************************
+class RingBuffer<T> {
+    private static final int SPINS = 100;
+    private static final long PARK_NANOS = 50000;
+
+    private final Object[] slots;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong(); // next slot to take
+    private final AtomicLong tail = new AtomicLong(); // next slot to fill
+    private volatile boolean closed;
+    private volatile boolean aborted;
+
+    // capacity is rounded up to a power of two
+    public RingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        slots = new Object[size];
+        mask = size - 1;
+    }
+
+    public void put(T item) {
+        long t = tail.get();
+        int idle = 0;
+        while (t - head.get() == slots.length) {
+            idle = await(idle);
+        }
+        slots[(int)t & mask] = item;
+        tail.lazySet(t + 1);
+    }
+
+    // the next item, or null once the buffer is closed and empty
+    @SuppressWarnings("unchecked")
+    public T take() {
+        long h = head.get();
+        int idle = 0;
+        while (h == tail.get()) {
+            if (closed && h == tail.get()) {
+                return null;
+            }
+            idle = await(idle);
+        }
+        int slot = (int)h & mask;
+        T item = (T)slots[slot];
+        slots[slot] = null;
+        head.lazySet(h + 1);
+        return item;
+    }
+
+    // called by the producer after its last put
+    public void close() {
+        closed = true;
+    }
+
+    public void abort() {
+        aborted = true;
+    }
+
+    private int await(int idle) {
+        if (aborted) {
+            throw new IllegalStateException("pipeline stopped");
+        }
+        if (idle < SPINS) {
+            Thread.yield();
+        }
+        else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+        return idle + 1;
+    }
+}
@@ -0,0 +1,244 @@
+package jsoncompressor;
+
+import java.util.*;
+
+// **********************************************************************
+// Schema
+//
+// The header of an array as HPackWriter lays it out: the keys of its
+// objects and, above level 0, what is shared by the values of each key.
+//
+//  level 0  keys in order of first appearance, nothing else (the format
+//           Json.compile writes)
+//  level 1  keys ordered by how many objects have them, so rows that
+//           lack the rarer keys end early; the objects under a key get a
+//           schema of their own, written in the header as
+//           {"key": [nested header]}, and are written as rows of it.
+//           Not when arrays are under that key too.
+//  level 2  as 1, and a key whose values are all strings, numbers or
+//           booleans with some repeated is enumerated: the header holds
+//           {"key": {"enum": [distinct values]}} and rows hold indexes.
+//           So is a key whose values are all arrays of those, like tags:
+//           rows hold an array of indexes in place of each array.
+//  level 3  as 2, but only where the enumeration is shorter
+//
+// A key with more than enumLimit distinct values is never enumerated.
+// Nulls never count against a shared schema or an enumeration; they are
+// written as null. A KeyDictionary does not change the order of the keys,
+// only how HPackWriter writes them.
+// **********************************************************************
+class Schema {
+    public static final int MAX_LEVEL = 3;
+    public static final int NO_ENUM_LIMIT = Integer.MAX_VALUE;
+
+    public SymbolTable keys;
+    // one per key, or null at level 0
+    public Column[] columns;
+
+    // level 0
+    public Schema(SymbolTable keys) {
+        this.keys = keys;
+    }
+
+    // The schema of a set of objects at the given level
+    public static Schema of(List<JsonObject> objects, int level) {
+        return of(objects, level, NO_ENUM_LIMIT);
+    }
+
+    public static Schema of(List<JsonObject> objects, int level, int enumLimit) {
+        SymbolTable firstSeen = new SymbolTable();
+        int[] counts = new int[8];
+        for (JsonObject obj : objects) {
+            for (int i = 0; i < obj.pairList.size(); ++i) {
+                String key = obj.pairList.get(i).key;
+                firstSeen.addKey(key);
+                int column = firstSeen.indexOf(key);
+                if (column == counts.length) {
+                    counts = Arrays.copyOf(counts, column * 2);
+                }
+                counts[column]++;
+            }
+        }
+        if (level == 0) {
+            return new Schema(firstSeen);
+        }
+
+        // most common keys first, ties in order of first appearance
+        Integer[] order = new Integer[firstSeen.size()];
+        for (int i = 0; i < order.length; ++i) {
+            order[i] = i;
+        }
+        final int[] keyCounts = counts;
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                return keyCounts[b] - keyCounts[a];
+            }
+        });
+        SymbolTable keys = new SymbolTable();
+        for (int i = 0; i < order.length; ++i) {
+            keys.addKey(firstSeen.keyAt(order[i]));
+        }
+
+        // the values of every key, to look for what they share
+        List<List<JsonValue>> values = new ArrayList<List<JsonValue>>(keys.size());
+        for (int i = 0; i < keys.size(); ++i) {
+            values.add(new ArrayList<JsonValue>(keyCounts[order[i]]));
+        }
+        for (JsonObject obj : objects) {
+            for (int i = 0; i < obj.pairList.size(); ++i) {
+                JsonPair pair = obj.pairList.get(i);
+                if (!(pair.value instanceof NullLit)) {
+                    values.get(keys.indexOf(pair.key)).add(pair.value);
+                }
+            }
+        }
+
+        Schema schema = new Schema(keys);
+        schema.columns = new Column[keys.size()];
+        for (int i = 0; i < keys.size(); ++i) {
+            schema.columns[i] = Column.of(values.get(i), level, enumLimit);
+        }
+        return schema;
+    }
+
+    // The objects among values, or null if there are none or an array is
+    // there too: an array and a row cannot be told apart in a column
+    static List<JsonObject> objects(List<JsonValue> values) {
+        List<JsonObject> objects = new ArrayList<JsonObject>(values.size());
+        for (JsonValue value : values) {
+            if (value instanceof JsonArrayValue) {
+                return null;
+            }
+            if (value instanceof JsonObjectValue) {
+                objects.add(((JsonObjectValue)value).obj);
+            }
+        }
+        return objects.isEmpty() ? null : objects;
+    }
+
+    // What the values of one key share: a nested schema, an enumeration
+    // of the values or of the elements of array values, or nothing
+    static class Column {
+        public Schema nested;
+        public List<Object> enumValues;
+        public Map<Object, Integer> enumIndex;
+        // the values are arrays and their elements are enumerated
+        public boolean enumElements;
+
+        static Column of(List<JsonValue> values, int level, int enumLimit) {
+            Column column = new Column();
+
+            List<JsonObject> objects = objects(values);
+            if (objects != null) {
+                column.nested = Schema.of(objects, level, enumLimit);
+                return column;
+            }
+            if (level < 2) {
+                return column;
+            }
+
+            List<JsonValue> scalars = values;
+            // "[]," per array at level 0, the header of its empty scope
+            long arrayLength = 0;
+            if (!values.isEmpty() && values.get(0) instanceof JsonArrayValue) {
+                scalars = elements(values);
+                if (scalars == null) {
+                    return column;
+                }
+                arrayLength = 3L * values.size();
+                column.enumElements = true;
+            }
+
+            Map<Object, Integer> index = new HashMap<Object, Integer>();
+            List<Object> distinct = new ArrayList<Object>();
+            long plainLength = arrayLength;
+            long indexLength = 0;
+            for (JsonValue value : scalars) {
+                Object key = enumKey(value);
+                if (key == null) {
+                    return new Column();
+                }
+                Integer i = index.get(key);
+                if (i == null) {
+                    if (distinct.size() == enumLimit) {
+                        return new Column();
+                    }
+                    i = distinct.size();
+                    index.put(key, i);
+                    distinct.add(key);
+                }
+                plainLength += length(key);
+                indexLength += digits(i);
+            }
+
+            if (distinct.size() == scalars.size()) {
+                return new Column();
+            }
+            if (level >= 3) {
+                // {"key":{"enum":[...]}} instead of "key" in the header
+                long enumLength = indexLength + 14;
+                for (Object key : distinct) {
+                    enumLength += length(key) + 1;
+                }
+                if (enumLength >= plainLength) {
+                    return new Column();
+                }
+            }
+            column.enumValues = distinct;
+            column.enumIndex = index;
+            return column;
+        }
+
+        public boolean isEnumerated() {
+            return enumIndex != null;
+        }
+
+        public int indexOf(JsonValue value) {
+            return enumIndex.get(enumKey(value));
+        }
+    }
+
+    // The elements of values that are all arrays, or null if one is not
+    static List<JsonValue> elements(List<JsonValue> values) {
+        List<JsonValue> elements = new ArrayList<JsonValue>();
+        for (JsonValue value : values) {
+            if (!(value instanceof JsonArrayValue)) {
+                return null;
+            }
+            elements.addAll(((JsonArrayValue)value).array.valueList);
+        }
+        return elements;
+    }
+
+    // Strings and numbers are both written as strings, so they share
+    // entries; null for anything that is not enumerated
+    static Object enumKey(JsonValue value) {
+        if (value instanceof StringLit) {
+            return ((StringLit)value).str();
+        }
+        if (value instanceof NumberLit) {
+            return value.toString();
+        }
+        if (value instanceof BoolLit) {
+            return ((BoolLit)value).compile();
+        }
+        return null;
+    }
+
+    // written length, close enough to compare the two layouts
+    private static int length(Object key) {
+        if (key instanceof String) {
+            return ((String)key).length() + 2;
+        }
+        return ((Boolean)key) ? 4 : 5;
+    }
+
+    private static int digits(int i) {
+        int digits = 1;
+        while (i >= 10) {
+            i /= 10;
+            digits++;
+        }
+        return digits;
+    }
+}
@@ -0,0 +1,140 @@
+package jsoncompressor;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// **********************************************************************
+// SchemaCache
+//
+// Level 0 schemas of root objects, keyed by the object's keys in order,
+// with the header already encoded. A document whose shape was seen
+// before skips building its key table, the column lookups for its row
+// and encoding its header. Shared by any number of threads.
+//
+// Holds at most capacity shapes. When it grows past that, the least
+// recently used eighth is dropped in one pass by whichever thread gets
+// there first; lookups never wait for it.
+//
+// A cached header depends on the dictionary it was written with, so a
+// cache belongs to one writer configuration (see Compressor).
+// **********************************************************************
+class SchemaCache {
+    public static final int DEFAULT_CAPACITY = 256;
+
+    private final int capacity;
+    private final ConcurrentHashMap<Shape, Entry> entries;
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public SchemaCache(int capacity) {
+        this.capacity = capacity;
+        entries = new ConcurrentHashMap<Shape, Entry>(Math.min(capacity, 1024));
+    }
+
+    // The cached schema for the keys of obj, or null
+    public Entry get(JsonObject obj) {
+        Entry entry = entries.get(new Shape(obj.pairList));
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        entry.lastUsed = clock.incrementAndGet();
+        return entry;
+    }
+
+    public void put(JsonObject obj, Entry entry) {
+        entry.lastUsed = clock.incrementAndGet();
+        entries.put(new Shape(obj.pairList), entry);
+        if (entries.size() > capacity) {
+            evict();
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long hits() {
+        return hits.get();
+    }
+
+    public long misses() {
+        return misses.get();
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    private void evict() {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long[] stamps = new long[entries.size()];
+            int n = 0;
+            for (Entry entry : entries.values()) {
+                if (n == stamps.length) {
+                    break;
+                }
+                stamps[n++] = entry.lastUsed;
+            }
+            int drop = n - capacity + capacity / 8;
+            if (drop <= 0) {
+                return;
+            }
+            Arrays.sort(stamps, 0, n);
+            long cutoff = stamps[Math.min(drop, n) - 1];
+            for (Iterator<Entry> it = entries.values().iterator(); it.hasNext();) {
+                if (it.next().lastUsed <= cutoff) {
+                    it.remove();
+                }
+            }
+        }
+        finally {
+            evicting.set(false);
+        }
+    }
+
+    // What is kept per shape
+    static class Entry {
+        public Schema schema;
+        public byte[] header;
+        // keys in column order, each once: the row is the values in order
+        public boolean ordered;
+        volatile long lastUsed;
+
+        Entry(Schema schema, byte[] header, boolean ordered) {
+            this.schema = schema;
+            this.header = header;
+            this.ordered = ordered;
+        }
+    }
+
+    // The keys of an object, in order
+    private static class Shape {
+        private final String[] keys;
+        private final int hash;
+
+        Shape(JsonPairList pairs) {
+            keys = new String[pairs.size()];
+            for (int i = 0; i < keys.length; ++i) {
+                keys[i] = pairs.get(i).key;
+            }
+            hash = Arrays.hashCode(keys);
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+
+        public boolean equals(Object other) {
+            return other instanceof Shape && Arrays.equals(keys, ((Shape)other).keys);
+        }
+    }
+}
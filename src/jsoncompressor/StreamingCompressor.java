@@ -0,0 +1,264 @@
+package jsoncompressor;
+
+import java.io.*;
+import java.util.*;
+import java_cup.runtime.*;
+
+// **********************************************************************
+// StreamingCompressor
+//
+// Compresses a file without building the Ast for the whole document.
+// The root header has to be written before the first record, so the
+// input is read twice: the first pass only collects the keys of the
+// root-level objects, the second pass builds one root-level element at a
+// time and writes it out immediately with HPackWriter. Memory is bounded by
+// the largest single element plus the root header, and the output is
+// identical to Json.compile.
+// **********************************************************************
+class StreamingCompressor {
+    private String inputFileName;
+    private Errors errors;
+    private java_cup.runtime.Scanner scanner;
+    private ValueParser parser;
+    private boolean mapped = false;
+    // how often each key of a root object appears, from the first pass
+    private int[] rootCounts;
+
+    public StreamingCompressor(String inputFileName, Errors errors) {
+        this.inputFileName = inputFileName;
+        this.errors = errors;
+    }
+
+    // scan a memory-mapped input with ByteLexer instead of Yylex
+    public void setMapped(boolean mapped) {
+        this.mapped = mapped;
+    }
+
+    public void compress(OutputStream out) throws Exception {
+        SymbolTable table = scanHeader();
+        if (errors.fatalError) {
+            return;
+        }
+
+        HPackWriter writer = new HPackWriter(out);
+        Closeable input = openScanner();
+        try {
+
+            writer.writeByte('[');
+            Schema schema = new Schema(table);
+            writer.writeHeader(schema);
+
+            Symbol tok = next();
+            if (tok.sym == sym.LSQBRACKET) {
+                emitArray(schema, writer);
+            }
+            else {
+                writer.writeByte(',');
+                emitObject(table, writer);
+            }
+            parser.expect(next(), sym.EOF);
+
+            writer.writeByte(']');
+            writer.flush();
+        }
+        finally {
+            input.close();
+        }
+    }
+
+    // ******************************************************************
+    // First pass: keys of the root object, or of the objects directly
+    // inside the root array, in order of first appearance
+    // ******************************************************************
+    private SymbolTable scanHeader() throws Exception {
+        SymbolTable table = new SymbolTable();
+        Closeable input = openScanner();
+        try {
+
+            Symbol tok = next();
+            if (tok.sym == sym.LCURLY) {
+                List<String> keys = new ArrayList<String>();
+                scanKeys(table, keys);
+                rootCounts = new int[table.size()];
+                for (String key : keys) {
+                    rootCounts[table.indexOf(key)]++;
+                }
+            }
+            else {
+                parser.expect(tok, sym.LSQBRACKET);
+                tok = next();
+                if (tok.sym != sym.RSQBRACKET) {
+                    while (true) {
+                        if (tok.sym == sym.LCURLY) {
+                            scanKeys(table, null);
+                        }
+                        else {
+                            skipValue(tok);
+                        }
+                        tok = next();
+                        if (tok.sym == sym.RSQBRACKET) {
+                            break;
+                        }
+                        parser.expect(tok, sym.COMMA);
+                        tok = next();
+                    }
+                }
+            }
+            parser.expect(next(), sym.EOF);
+        }
+        finally {
+            input.close();
+        }
+        return table;
+    }
+
+    // keys, if not null, gets every key in order, repeats included
+    private void scanKeys(SymbolTable table, List<String> keys) throws Exception {
+        Symbol tok = next();
+        if (tok.sym == sym.RCURLY) {
+            return;
+        }
+        while (true) {
+            parser.expect(tok, sym.STRINGLITERAL);
+            String key = ((StringTokenVal)tok.value).strVal;
+            table.addKey(key);
+            if (keys != null) {
+                keys.add(key);
+            }
+            parser.expect(next(), sym.COLON);
+            skipValue(next());
+            tok = next();
+            if (tok.sym == sym.RCURLY) {
+                return;
+            }
+            parser.expect(tok, sym.COMMA);
+            tok = next();
+        }
+    }
+
+    private void skipValue(Symbol tok) throws Exception {
+        if (tok.sym == sym.LCURLY) {
+            tok = next();
+            if (tok.sym == sym.RCURLY) {
+                return;
+            }
+            while (true) {
+                parser.expect(tok, sym.STRINGLITERAL);
+                parser.expect(next(), sym.COLON);
+                skipValue(next());
+                tok = next();
+                if (tok.sym == sym.RCURLY) {
+                    return;
+                }
+                parser.expect(tok, sym.COMMA);
+                tok = next();
+            }
+        }
+        else if (tok.sym == sym.LSQBRACKET) {
+            tok = next();
+            if (tok.sym == sym.RSQBRACKET) {
+                return;
+            }
+            while (true) {
+                skipValue(tok);
+                tok = next();
+                if (tok.sym == sym.RSQBRACKET) {
+                    return;
+                }
+                parser.expect(tok, sym.COMMA);
+                tok = next();
+            }
+        }
+        else if (!isLiteral(tok)) {
+            parser.syntaxError(tok);
+        }
+    }
+
+    // ******************************************************************
+    // Second pass: compile and write one root-level element at a time
+    // ******************************************************************
+    private void emitArray(Schema schema, HPackWriter writer) throws Exception {
+        Symbol tok = next();
+        if (tok.sym == sym.RSQBRACKET) {
+            return;
+        }
+        while (true) {
+            writer.writeByte(',');
+            writer.writeElement(parser.parseValue(tok), schema);
+
+            tok = next();
+            if (tok.sym == sym.RSQBRACKET) {
+                return;
+            }
+            parser.expect(tok, sym.COMMA);
+            tok = next();
+        }
+    }
+
+    // the root object is a single row; its pairs go into the same columns
+    // as JsonObject.compile, so a repeated key keeps its last value. Every
+    // column of the header is present, and a column is written as soon as
+    // the pair holding its last value has been read and the columns before
+    // it are written; only pairs that cannot be written yet are held.
+    private void emitObject(SymbolTable table, HPackWriter writer) throws Exception {
+        writer.writeByte('[');
+
+        Symbol tok = next();
+        if (tok.sym != sym.RCURLY) {
+            int[] remaining = rootCounts.clone();
+            JsonValue[] held = new JsonValue[remaining.length];
+            int written = 0;
+            while (true) {
+                JsonPair pair = parser.parsePair(tok);
+
+                int pos = table.indexOf(pair.key);
+                held[pos] = pair.value;
+                remaining[pos]--;
+                for (; written < held.length && remaining[written] == 0; ++written) {
+                    if (written > 0) {
+                        writer.writeByte(',');
+                    }
+                    writer.writeValue(held[written]);
+                    held[written] = null;
+                }
+
+                tok = next();
+                if (tok.sym == sym.RCURLY) {
+                    break;
+                }
+                parser.expect(tok, sym.COMMA);
+                tok = next();
+            }
+        }
+
+        writer.writeByte(']');
+    }
+
+    // ******************************************************************
+    // Token helpers
+    // ******************************************************************
+
+    // points scanner at the start of the input; returns what to close
+    private Closeable openScanner() throws IOException {
+        if (mapped) {
+            MappedInput input = new MappedInput(inputFileName);
+            scanner = new ByteLexer(input, errors);
+            parser = new ValueParser(scanner, errors);
+            return input;
+        }
+        Reader reader = new BufferedReader(new FileReader(inputFileName));
+        scanner = new Yylex(reader, errors);
+        parser = new ValueParser(scanner, errors);
+        return reader;
+    }
+
+    private Symbol next() throws Exception {
+        return scanner.next_token();
+    }
+
+    private static boolean isLiteral(Symbol tok) {
+        return tok.sym == sym.STRINGLITERAL || tok.sym == sym.NUMBERLITERAL
+            || tok.sym == sym.TRUELITERAL || tok.sym == sym.FALSELITERAL
+            || tok.sym == sym.NULLLITERAL;
+    }
+}
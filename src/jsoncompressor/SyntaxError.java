@@ -0,0 +1,24 @@
+package jsoncompressor;
+
+// Thrown when the input cannot be parsed. The message has already been
+// reported through Errors.
+public class SyntaxError extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    private int lineNum;
+    private int charNum;
+
+    SyntaxError(int lineNum, int charNum, String msg) {
+        super(lineNum + ":" + charNum + " " + msg);
+        this.lineNum = lineNum;
+        this.charNum = charNum;
+    }
+
+    public int getLine() {
+        return lineNum;
+    }
+
+    public int getChar() {
+        return charNum;
+    }
+}
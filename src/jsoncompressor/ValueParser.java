@@ -0,0 +1,114 @@
+package jsoncompressor;
+
+import java_cup.runtime.*;
+
+// **********************************************************************
+// ValueParser
+//
+// Builds the same nodes as the grammar in c.cup for one value at a time,
+// pulling tokens from a scanner, so a caller can handle the elements of
+// the root array one by one instead of parsing the whole document.
+// **********************************************************************
+class ValueParser {
+    private java_cup.runtime.Scanner scanner;
+    private Errors errors;
+
+    public ValueParser(java_cup.runtime.Scanner scanner, Errors errors) {
+        this.scanner = scanner;
+        this.errors = errors;
+    }
+
+    public Symbol next() throws Exception {
+        return scanner.next_token();
+    }
+
+    public JsonValue parseValue(Symbol tok) throws Exception {
+        switch (tok.sym) {
+        case sym.STRINGLITERAL: {
+            StringTokenVal s = (StringTokenVal)tok.value;
+            return new StringLit(s.linenum, s.charnum, s.strVal);
+        }
+        case sym.NUMBERLITERAL: {
+            NumberTokenVal n = (NumberTokenVal)tok.value;
+            return new NumberLit(n.linenum, n.charnum, n.text);
+        }
+        case sym.TRUELITERAL:
+        case sym.FALSELITERAL: {
+            BoolTokenVal b = (BoolTokenVal)tok.value;
+            return new BoolLit(b.linenum, b.charnum, b.boolVal);
+        }
+        case sym.NULLLITERAL: {
+            NullTokenVal n = (NullTokenVal)tok.value;
+            return new NullLit(n.linenum, n.charnum);
+        }
+        case sym.LCURLY:
+            return new JsonObjectValue(parseObject());
+        case sym.LSQBRACKET:
+            return new JsonArrayValue(parseArray());
+        default:
+            syntaxError(tok);
+            return null;
+        }
+    }
+
+    public JsonPair parsePair(Symbol tok) throws Exception {
+        expect(tok, sym.STRINGLITERAL);
+        String key = ((StringTokenVal)tok.value).strVal;
+        expect(next(), sym.COLON);
+        return new JsonPair(key, parseValue(next()));
+    }
+
+    public JsonObject parseObject() throws Exception {
+        JsonPairList pairs = new JsonPairList();
+        Symbol tok = next();
+        if (tok.sym != sym.RCURLY) {
+            while (true) {
+                pairs.add(parsePair(tok));
+                tok = next();
+                if (tok.sym == sym.RCURLY) {
+                    break;
+                }
+                expect(tok, sym.COMMA);
+                tok = next();
+            }
+        }
+        pairs.trimToSize();
+        return new JsonObject(pairs);
+    }
+
+    public JsonArray parseArray() throws Exception {
+        JsonValueList values = new JsonValueList();
+        Symbol tok = next();
+        if (tok.sym != sym.RSQBRACKET) {
+            while (true) {
+                values.add(parseValue(tok));
+                tok = next();
+                if (tok.sym == sym.RSQBRACKET) {
+                    break;
+                }
+                expect(tok, sym.COMMA);
+                tok = next();
+            }
+        }
+        values.trimToSize();
+        return new JsonArray(values);
+    }
+
+    public void expect(Symbol tok, int kind) throws SyntaxError {
+        if (tok.sym != kind) {
+            syntaxError(tok);
+        }
+    }
+
+    // same report as parser.syntax_error
+    public void syntaxError(Symbol currToken) throws SyntaxError {
+        if (currToken.value == null) {
+            errors.fatal(0, 0, "Syntax error at end of file");
+            throw new SyntaxError(0, 0, "Syntax error at end of file");
+        }
+        int lineNum = ((TokenVal)currToken.value).linenum;
+        int charNum = ((TokenVal)currToken.value).charnum;
+        errors.fatal(lineNum, charNum, "Syntax error");
+        throw new SyntaxError(lineNum, charNum, "Syntax error");
+    }
+}
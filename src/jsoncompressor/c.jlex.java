@@ -1,3 +1,4 @@
+package jsoncompressor;
 import java_cup.runtime.*; // defines the Symbol class
 // The generated scanner will return a Symbol for each token that it finds.
 // A Symbol contains an Object field named value; that field will be of type
@@ -31,11 +32,11 @@ class BoolTokenVal extends TokenVal {
   }
 }
 class NumberTokenVal extends TokenVal {
- // the value of the integer literal
-  double numberVal;
-  NumberTokenVal(int l, int c, double val) {
+ // the number literal as it was written, see NumberLit
+  String text;
+  NumberTokenVal(int l, int c, String text) {
     super(l,c);
-    numberVal = val;
+    this.text = text;
   }
 }
 class BadEscapedChar extends Exception {
@@ -50,43 +51,59 @@ class StringTokenVal extends TokenVal {
   //process string s and return a String with all the escaped characters expanded
   //throws BadEscapedChar if a bad escaped character is found
   public static String checkEscapedChars(String s) throws BadEscapedChar {
-    // index 0 is the opening quote, so don't include it.
+    return checkEscapedChars(s, new StringBuilder());
+  }
+  //same as above, but builds the result in buf so a scanner can reuse one
+  //buffer for every literal. Runs in one pass; a literal without escapes is
+  //returned as a plain substring.
+  public static String checkEscapedChars(String s, StringBuilder buf) throws BadEscapedChar {
+    // index 0 is the opening quote and the last character is the closing
+    // quote, so don't include them.
+    int end = s.length() - 1;
+    int slash = s.indexOf('\\', 1);
+    if (slash == -1) {
+      return s.substring(1, end);
+    }
+    buf.setLength(0);
     int start = 1;
-    int slash = s.indexOf("\\");
-    String strVal = "";
     while (slash != -1) {
-      strVal = strVal + s.substring(start, slash);
+      buf.append(s, start, slash);
       // if the slash is the last character in the string then we are done.
-      if (slash == s.length() - 1) throw new BadEscapedChar();
+      if (slash + 1 >= end) throw new BadEscapedChar();
       char c = s.charAt(slash + 1);
-      if (c == 'n') {
-        strVal = strVal + "\n";
-      } else if (c == 't') {
-        strVal = strVal + "\t";
-      } else if (c == '"') {
-        strVal = strVal + "\"";
-      } else if (c == '\\') {
-        strVal = strVal + "\\";
-      } else if (c == '\'') {
-        strVal = strVal + "'";
-      } else {
-        throw new BadEscapedChar();
-      }
       start = slash + 2;
-      slash = s.indexOf("\\", slash + 2);
+      switch (c) {
+        case 'n': buf.append('\n'); break;
+        case 't': buf.append('\t'); break;
+        case 'r': buf.append('\r'); break;
+        case 'b': buf.append('\b'); break;
+        case 'f': buf.append('\f'); break;
+        case '"': buf.append('"'); break;
+        case '\\': buf.append('\\'); break;
+        case '/': buf.append('/'); break;
+        case '\'': buf.append('\''); break;
+        case 'u':
+          // surrogate pairs are two consecutive escapes, each one appends
+          // its own UTF-16 unit
+          if (start + 4 > end) throw new BadEscapedChar();
+          int code = 0;
+          for (int i = start; i < start + 4; i++) {
+            int digit = Character.digit(s.charAt(i), 16);
+            if (digit < 0) throw new BadEscapedChar();
+            code = (code << 4) | digit;
+          }
+          buf.append((char)code);
+          start += 4;
+          break;
+        default:
+          throw new BadEscapedChar();
+      }
+      slash = s.indexOf('\\', start);
     }
-    //the last character is the closing quote, so don't include.
-    if (start < s.length() - 1)
-      strVal = strVal + s.substring(start, s.length() - 1);
-    //System.out.println(strVal);
-    return strVal;
+    buf.append(s, start, end);
+    return buf.toString();
   }
 }
-// The following class is used to keep track of the character number at which
-// the current token starts on its line.
-class CharNum {
-  static int num=1;
-}
 
 
 class Yylex implements java_cup.runtime.Scanner {
@@ -98,6 +115,55 @@ class Yylex implements java_cup.runtime.Scanner {
 	private final int YY_END = 2;
 	private final int YY_NO_ANCHOR = 4;
 	private final char YY_EOF = '\uFFFF';
+
+// the character number at which the current token starts on its line
+private int charNum = 1;
+// where this scanner reports bad characters
+private Errors errors = new Errors();
+// reused by every string literal this scanner unescapes
+private StringBuilder strBuf = new StringBuilder();
+// short strings and numbers by a hash of their characters, so repeated
+// keys and values come back as one String, as in ByteLexer
+private static final int INTERN_SLOTS = 1 << 12;
+private static final int INTERN_MAX_LENGTH = 32;
+private String[] interned = new String[INTERN_SLOTS];
+Yylex(java.io.Reader reader, Errors errors) {
+  this(reader);
+  this.errors = errors;
+}
+// the text of the current string literal without its quotes, unescaped
+private String stringText() throws BadEscapedChar {
+  int end = yy_buffer_end - 1;
+  for (int i = yy_buffer_start + 1; i < end; ++i) {
+    if (yy_buffer[i] == '\\') {
+      return StringTokenVal.checkEscapedChars(yytext(), strBuf);
+    }
+  }
+  return intern(yy_buffer_start + 1, end - yy_buffer_start - 1);
+}
+private String intern(int offset, int length) {
+  if (length > INTERN_MAX_LENGTH) {
+    return new String(yy_buffer, offset, length);
+  }
+  int hash = 0;
+  for (int i = offset; i < offset + length; ++i) {
+    hash = 31 * hash + yy_buffer[i];
+  }
+  int slot = (hash ^ (hash >>> 12)) & (INTERN_SLOTS - 1);
+  String str = interned[slot];
+  if (str != null && str.length() == length) {
+    int i = 0;
+    while (i < length && str.charAt(i) == yy_buffer[offset + i]) {
+      i++;
+    }
+    if (i == length) {
+      return str;
+    }
+  }
+  str = new String(yy_buffer, offset, length);
+  interned[slot] = str;
+  return str;
+}
 	private java.io.BufferedReader yy_reader;
 	private int yy_buffer_index;
 	private int yy_buffer_read;
@@ -316,6 +382,7 @@ private int [][] unpackFromString(int size1, int size2, String st)
 		YY_NO_ANCHOR,
 		YY_NOT_ACCEPT,
 		YY_NO_ANCHOR,
+		YY_NO_ANCHOR,
 		YY_NOT_ACCEPT,
 		YY_NO_ANCHOR,
 		YY_NOT_ACCEPT,
@@ -327,6 +394,8 @@ private int [][] unpackFromString(int size1, int size2, String st)
 		YY_NOT_ACCEPT,
 		YY_NOT_ACCEPT,
 		YY_NOT_ACCEPT,
+		YY_NOT_ACCEPT,
+		YY_NOT_ACCEPT,
 		YY_NOT_ACCEPT
 	};
 	private int yy_cmap[] = {
@@ -338,14 +407,14 @@ private int [][] unpackFromString(int size1, int size2, String st)
 		7, 8, 9, 10, 11, 12, 13, 14,
 		15, 15, 15, 15, 15, 15, 15, 15,
 		15, 15, 16, 17, 0, 18, 0, 0,
+		0, 0, 0, 0, 0, 19, 0, 0,
 		0, 0, 0, 0, 0, 0, 0, 0,
 		0, 0, 0, 0, 0, 0, 0, 0,
-		0, 0, 0, 0, 0, 0, 0, 0,
-		0, 0, 0, 19, 20, 21, 0, 0,
-		0, 22, 0, 0, 0, 23, 24, 0,
-		0, 0, 0, 0, 25, 0, 26, 0,
-		0, 0, 27, 28, 29, 30, 0, 0,
-		0, 0, 0, 31, 0, 32, 0, 0
+		0, 0, 0, 20, 21, 22, 0, 0,
+		0, 23, 0, 0, 0, 24, 25, 0,
+		0, 0, 0, 0, 26, 0, 27, 0,
+		0, 0, 28, 29, 30, 31, 0, 0,
+		0, 0, 0, 32, 0, 33, 0, 0
 		
 	};
 	private int yy_rmap[] = {
@@ -353,11 +422,11 @@ private int [][] unpackFromString(int size1, int size2, String st)
 		1, 1, 4, 1, 4, 5, 6, 1,
 		1, 1, 1, 1, 7, 1, 1, 7,
 		1, 1, 1, 8, 8, 9, 10, 11,
-		9, 12, 13, 14, 15, 7, 16, 17,
-		18, 19, 20, 21 
+		12, 13, 14, 15, 16, 17, 18, 7,
+		19, 12, 20, 21, 22, 23, 24 
 	};
-	private int yy_nxt[][] = unpackFromString(22,33,
-"1,2,3,4,28,5,6,7,8,9,10,11,12,1,13,14,15,16,17,18,1,19,1:2,31,1,33,1:2,35,1,20,21,-1:34,2,-1:31,5:2,-1,5:30,-1:15,14,-1:31,5,-1:31,32,-1,14,-1:17,37:2,-1,37,-1,37:15,38,37:11,23,27:4,22,27:15,30,27:12,-1:15,29,-1:17,27:2,-1,27:30,-1:22,34,-1:40,43,-1:27,39,-1:34,36,-1:35,41,-1:2,37:2,-1,37:30,-1:28,42,-1:29,24,-1:30,25,-1:32,26,-1:34,40,-1:7");
+	private int yy_nxt[][] = unpackFromString(25,34,
+"1,2,3,4,28,5,6,7,8,9,10,11,12,1,13,14,15,16,17,1,18,1,19,1:2,31,1,34,1:2,36,1,20,21,-1:35,2,-1:32,5:2,-1,5:31,-1:15,14,-1:32,5,-1:32,33,-1,14,-1:3,35,-1:4,35,-1:9,39:2,-1,39,-1,39:16,40,39:11,23,27:4,22,27:16,30,27:12,-1:15,29,-1:3,35,-1:4,35,-1:9,27:2,-1,27:31,-1:23,37,-1:25,32,-1:33,29,-1:49,46,-1:12,41,-1,41,-1:2,32,-1:46,38,-1:31,42,-1:38,44,-1:2,39:2,-1,39:31,-1:29,45,-1:30,24,-1:31,25,-1:33,26,-1:35,43,-1:7");
 	public java_cup.runtime.Symbol next_token ()
 		throws java.io.IOException {
 		char yy_lookahead;
@@ -408,205 +477,199 @@ return new Symbol(sym.EOF);
 					}
 					switch (yy_last_accept_state) {
 					case 1:
-						{ Errors.fatal(yyline+1, CharNum.num, "ignoring illegal character: " + yytext());
-    CharNum.num++; }
+						{ errors.fatal(yyline+1, charNum, "ignoring illegal character: " + yytext());
+    charNum++; }
 					case -2:
 						break;
 					case 2:
-						{CharNum.num += yytext().length(); }
+						{charNum += yytext().length(); }
 					case -3:
 						break;
 					case 3:
-						{CharNum.num = 1;}
+						{charNum = 1;}
 					case -4:
 						break;
 					case 4:
-						{CharNum.num = 1;}
+						{charNum = 1;}
 					case -5:
 						break;
 					case 5:
-						{ CharNum.num += yytext().length(); }
+						{ charNum += yytext().length(); }
 					case -6:
 						break;
 					case 6:
-						{ Symbol s = new Symbol(sym.PERCENT, new TokenVal(yyline+1, CharNum.num));
-      CharNum.num += 1;
+						{ Symbol s = new Symbol(sym.PERCENT, new TokenVal(yyline+1, charNum));
+      charNum += 1;
       return s; }
 					case -7:
 						break;
 					case 7:
-						{ Symbol s = new Symbol(sym.LPAREN, new TokenVal(yyline+1, CharNum.num));
-      CharNum.num += 1;
+						{ Symbol s = new Symbol(sym.LPAREN, new TokenVal(yyline+1, charNum));
+      charNum += 1;
       return s; }
 					case -8:
 						break;
 					case 8:
-						{ Symbol s = new Symbol(sym.RPAREN, new TokenVal(yyline+1, CharNum.num));
-      CharNum.num += 1;
+						{ Symbol s = new Symbol(sym.RPAREN, new TokenVal(yyline+1, charNum));
+      charNum += 1;
       return s; }
 					case -9:
 						break;
 					case 9:
-						{ Symbol s = new Symbol(sym.TIMES, new TokenVal(yyline+1, CharNum.num));
-      CharNum.num += 1;
+						{ Symbol s = new Symbol(sym.TIMES, new TokenVal(yyline+1, charNum));
+      charNum += 1;
       return s; }
 					case -10:
 						break;
 					case 10:
-						{ Symbol s = new Symbol(sym.PLUS, new TokenVal(yyline+1, CharNum.num));
-      CharNum.num += 1;
+						{ Symbol s = new Symbol(sym.PLUS, new TokenVal(yyline+1, charNum));
+      charNum += 1;
       return s; }
 					case -11:
 						break;
 					case 11:
-						{ Symbol s = new Symbol(sym.COMMA, new TokenVal(yyline+1, CharNum.num));
-    CharNum.num += 1;
+						{ Symbol s = new Symbol(sym.COMMA, new TokenVal(yyline+1, charNum));
+    charNum += 1;
     return s; }
 					case -12:
 						break;
 					case 12:
-						{ Symbol s = new Symbol(sym.MINUS, new TokenVal(yyline+1, CharNum.num));
-    CharNum.num += 1;
+						{ Symbol s = new Symbol(sym.MINUS, new TokenVal(yyline+1, charNum));
+    charNum += 1;
     return s; }
 					case -13:
 						break;
 					case 13:
-						{ Symbol s = new Symbol(sym.DIVIDE, new TokenVal(yyline+1, CharNum.num));
-    CharNum.num += 1;
+						{ Symbol s = new Symbol(sym.DIVIDE, new TokenVal(yyline+1, charNum));
+    charNum += 1;
     return s; }
 					case -14:
 						break;
 					case 14:
 						{
-   double val;
-   try {
-     val = Double.parseDouble(yytext());
-   } catch (NumberFormatException e) {
-     Errors.warn(yyline+1, CharNum.num, "number literal too large; using max value");
-     val = Double.MAX_VALUE;
-   }
-   Symbol s = new Symbol(sym.NUMBERLITERAL, new NumberTokenVal(yyline+1, CharNum.num, val));
-   CharNum.num += yytext().length();
+   Symbol s = new Symbol(sym.NUMBERLITERAL, new NumberTokenVal(yyline+1, charNum, intern(yy_buffer_start, yylength())));
+   charNum += yylength();
    return s;
 }
 					case -15:
 						break;
 					case 15:
-						{ Symbol s = new Symbol(sym.COLON, new TokenVal(yyline+1, CharNum.num));
-    CharNum.num += 1;
+						{ Symbol s = new Symbol(sym.COLON, new TokenVal(yyline+1, charNum));
+    charNum += 1;
     return s; }
 					case -16:
 						break;
 					case 16:
-						{ Symbol s = new Symbol(sym.SEMICOLON, new TokenVal(yyline+1, CharNum.num));
-    CharNum.num += 1;
+						{ Symbol s = new Symbol(sym.SEMICOLON, new TokenVal(yyline+1, charNum));
+    charNum += 1;
     return s; }
 					case -17:
 						break;
 					case 17:
-						{ Symbol s = new Symbol(sym.ASSIGN, new TokenVal(yyline+1, CharNum.num));
-    CharNum.num += 1;
+						{ Symbol s = new Symbol(sym.ASSIGN, new TokenVal(yyline+1, charNum));
+    charNum += 1;
     return s; }
 					case -18:
 						break;
 					case 18:
-						{ Symbol s = new Symbol(sym.LSQBRACKET, new TokenVal(yyline+1, CharNum.num));
-    CharNum.num += 1;
+						{ Symbol s = new Symbol(sym.LSQBRACKET, new TokenVal(yyline+1, charNum));
+    charNum += 1;
     return s; }
 					case -19:
 						break;
 					case 19:
-						{ Symbol s = new Symbol(sym.RSQBRACKET, new TokenVal(yyline+1, CharNum.num));
-    CharNum.num += 1;
+						{ Symbol s = new Symbol(sym.RSQBRACKET, new TokenVal(yyline+1, charNum));
+    charNum += 1;
     return s; }
 					case -20:
 						break;
 					case 20:
-						{ Symbol s = new Symbol(sym.LCURLY, new TokenVal(yyline+1, CharNum.num));
-    CharNum.num += 1;
+						{ Symbol s = new Symbol(sym.LCURLY, new TokenVal(yyline+1, charNum));
+    charNum += 1;
     return s; }
 					case -21:
 						break;
 					case 21:
-						{ Symbol s = new Symbol(sym.RCURLY, new TokenVal(yyline+1, CharNum.num));
-    CharNum.num += 1;
+						{ Symbol s = new Symbol(sym.RCURLY, new TokenVal(yyline+1, charNum));
+    charNum += 1;
     return s; }
 					case -22:
 						break;
 					case 22:
 						{
     try {
-      String str = StringTokenVal.checkEscapedChars(yytext());
-      Symbol s = new Symbol(sym.STRINGLITERAL, new StringTokenVal(yyline+1, CharNum.num, str));
-      //Symbol s = new Symbol(sym.STRINGLITERAL, new StringTokenVal(yyline+1, CharNum.num, yytext()));
-      CharNum.num += yytext().length();
+      String str = stringText();
+      Symbol s = new Symbol(sym.STRINGLITERAL, new StringTokenVal(yyline+1, charNum, str));
+      //Symbol s = new Symbol(sym.STRINGLITERAL, new StringTokenVal(yyline+1, charNum, yytext()));
+      charNum += yylength();
       return s;
     } catch (BadEscapedChar e) {
-      Errors.fatal(yyline+1, CharNum.num, "ignoring string literal with bad escaped character");
-      CharNum.num += yytext().length();
+      errors.fatal(yyline+1, charNum, "ignoring string literal with bad escaped character");
+      charNum += yytext().length();
     }
 }
 					case -23:
 						break;
 					case 23:
 						{
-    CharNum.num += yytext().length();
+    charNum += yytext().length();
 }
 					case -24:
 						break;
 					case 24:
-						{ Symbol s = new Symbol(sym.NULLLITERAL, new NullTokenVal(yyline+1, CharNum.num));
-       CharNum.num += 4;
+						{ Symbol s = new Symbol(sym.NULLLITERAL, new NullTokenVal(yyline+1, charNum));
+       charNum += 4;
        return s; }
 					case -25:
 						break;
 					case 25:
-						{ Symbol s = new Symbol(sym.TRUELITERAL, new BoolTokenVal(yyline+1, CharNum.num, true));
-       CharNum.num += 4;
+						{ Symbol s = new Symbol(sym.TRUELITERAL, new BoolTokenVal(yyline+1, charNum, true));
+       charNum += 4;
        return s; }
 					case -26:
 						break;
 					case 26:
-						{ Symbol s = new Symbol(sym.FALSELITERAL, new BoolTokenVal(yyline+1, CharNum.num, false));
-       CharNum.num += 5;
+						{ Symbol s = new Symbol(sym.FALSELITERAL, new BoolTokenVal(yyline+1, charNum, false));
+       charNum += 5;
        return s; }
 					case -27:
 						break;
 					case 28:
-						{ Errors.fatal(yyline+1, CharNum.num, "ignoring illegal character: " + yytext());
-    CharNum.num++; }
+						{ errors.fatal(yyline+1, charNum, "ignoring illegal character: " + yytext());
+    charNum++; }
 					case -28:
 						break;
 					case 29:
 						{
-   double val;
-   try {
-     val = Double.parseDouble(yytext());
-   } catch (NumberFormatException e) {
-     Errors.warn(yyline+1, CharNum.num, "number literal too large; using max value");
-     val = Double.MAX_VALUE;
-   }
-   Symbol s = new Symbol(sym.NUMBERLITERAL, new NumberTokenVal(yyline+1, CharNum.num, val));
-   CharNum.num += yytext().length();
+   Symbol s = new Symbol(sym.NUMBERLITERAL, new NumberTokenVal(yyline+1, charNum, intern(yy_buffer_start, yylength())));
+   charNum += yylength();
    return s;
 }
 					case -29:
 						break;
 					case 31:
-						{ Errors.fatal(yyline+1, CharNum.num, "ignoring illegal character: " + yytext());
-    CharNum.num++; }
+						{ errors.fatal(yyline+1, charNum, "ignoring illegal character: " + yytext());
+    charNum++; }
 					case -30:
 						break;
-					case 33:
-						{ Errors.fatal(yyline+1, CharNum.num, "ignoring illegal character: " + yytext());
-    CharNum.num++; }
+					case 32:
+						{
+   Symbol s = new Symbol(sym.NUMBERLITERAL, new NumberTokenVal(yyline+1, charNum, intern(yy_buffer_start, yylength())));
+   charNum += yylength();
+   return s;
+}
 					case -31:
 						break;
-					case 35:
-						{ Errors.fatal(yyline+1, CharNum.num, "ignoring illegal character: " + yytext());
-    CharNum.num++; }
+					case 34:
+						{ errors.fatal(yyline+1, charNum, "ignoring illegal character: " + yytext());
+    charNum++; }
 					case -32:
 						break;
+					case 36:
+						{ errors.fatal(yyline+1, charNum, "ignoring illegal character: " + yytext());
+    charNum++; }
+					case -33:
+						break;
 					default:
 						yy_error(YY_E_INTERNAL,false);
 					case -1:
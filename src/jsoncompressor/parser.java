@@ -1,14 +1,16 @@
 
 //----------------------------------------------------
 // The following code was generated by CUP v0.10k
-// Wed Jun 03 11:02:00 ICT 2015
+// Sun Oct 18 05:25:04 UTC 2026
 //----------------------------------------------------
 
+package jsoncompressor;
+
 import java_cup.runtime.*;
 import java.util.*;
 
 /** CUP v0.10k generated parser.
-  * @version Wed Jun 03 11:02:00 ICT 2015
+  * @version Sun Oct 18 05:25:04 UTC 2026
   */
 public class parser extends java_cup.runtime.lr_parser {
 
@@ -22,11 +24,11 @@ public class parser extends java_cup.runtime.lr_parser {
   protected static final short _production_table[][] = 
     unpackFromStrings(new String[] {
     "\000\023\000\002\002\004\000\002\003\003\000\002\003" +
-    "\003\000\002\004\006\000\002\004\004\000\002\005\005" +
-    "\000\002\006\005\000\002\006\002\000\002\007\006\000" +
+    "\003\000\002\004\005\000\002\004\004\000\002\005\005" +
+    "\000\002\006\005\000\002\006\003\000\002\007\005\000" +
     "\002\007\004\000\002\010\003\000\002\010\003\000\002" +
     "\010\003\000\002\010\003\000\002\010\003\000\002\010" +
-    "\003\000\002\010\003\000\002\011\005\000\002\011\002" +
+    "\003\000\002\010\003\000\002\011\005\000\002\011\003" +
     "" });
 
   /** Access to production table. */
@@ -35,29 +37,28 @@ public class parser extends java_cup.runtime.lr_parser {
   /** Parse-action table. */
   protected static final short[][] _action_table = 
     unpackFromStrings(new String[] {
-    "\000\037\000\006\011\007\013\004\001\002\000\022\004" +
-    "\031\005\027\006\025\007\030\010\022\011\007\013\004" +
+    "\000\035\000\006\011\007\013\004\001\002\000\022\004" +
+    "\030\005\026\006\024\007\027\010\021\011\007\013\004" +
     "\014\034\001\002\000\004\002\000\001\002\000\004\002" +
-    "\032\001\002\000\006\005\011\012\013\001\002\000\004" +
-    "\002\uffff\001\002\000\004\022\021\001\002\000\006\012" +
-    "\ufffa\017\014\001\002\000\012\002\ufffd\012\ufffd\014\ufffd" +
-    "\017\ufffd\001\002\000\004\005\011\001\002\000\004\012" +
-    "\016\001\002\000\012\002\ufffe\012\ufffe\014\ufffe\017\ufffe" +
-    "\001\002\000\006\012\ufffa\017\014\001\002\000\004\012" +
-    "\ufffb\001\002\000\020\004\031\005\027\006\025\007\030" +
-    "\010\022\011\007\013\004\001\002\000\010\012\ufff1\014" +
-    "\ufff1\017\ufff1\001\002\000\006\012\ufffc\017\ufffc\001\002" +
-    "\000\010\012\ufff5\014\ufff5\017\ufff5\001\002\000\010\012" +
-    "\ufff3\014\ufff3\017\ufff3\001\002\000\010\012\ufff4\014\ufff4" +
-    "\017\ufff4\001\002\000\010\012\ufff7\014\ufff7\017\ufff7\001" +
-    "\002\000\010\012\ufff2\014\ufff2\017\ufff2\001\002\000\010" +
-    "\012\ufff6\014\ufff6\017\ufff6\001\002\000\004\002\001\001" +
-    "\002\000\006\014\uffef\017\035\001\002\000\012\002\ufff8" +
-    "\012\ufff8\014\ufff8\017\ufff8\001\002\000\020\004\031\005" +
-    "\027\006\025\007\030\010\022\011\007\013\004\001\002" +
-    "\000\004\014\037\001\002\000\012\002\ufff9\012\ufff9\014" +
-    "\ufff9\017\ufff9\001\002\000\006\014\uffef\017\035\001\002" +
-    "\000\004\014\ufff0\001\002" });
+    "\031\001\002\000\006\005\011\012\014\001\002\000\004" +
+    "\002\uffff\001\002\000\004\022\020\001\002\000\006\012" +
+    "\016\017\015\001\002\000\006\012\ufffa\017\ufffa\001\002" +
+    "\000\012\002\ufffd\012\ufffd\014\ufffd\017\ufffd\001\002\000" +
+    "\004\005\011\001\002\000\012\002\ufffe\012\ufffe\014\ufffe" +
+    "\017\ufffe\001\002\000\006\012\ufffb\017\ufffb\001\002\000" +
+    "\020\004\030\005\026\006\024\007\027\010\021\011\007" +
+    "\013\004\001\002\000\010\012\ufff1\014\ufff1\017\ufff1\001" +
+    "\002\000\006\012\ufffc\017\ufffc\001\002\000\010\012\ufff5" +
+    "\014\ufff5\017\ufff5\001\002\000\010\012\ufff3\014\ufff3\017" +
+    "\ufff3\001\002\000\010\012\ufff4\014\ufff4\017\ufff4\001\002" +
+    "\000\010\012\ufff7\014\ufff7\017\ufff7\001\002\000\010\012" +
+    "\ufff2\014\ufff2\017\ufff2\001\002\000\010\012\ufff6\014\ufff6" +
+    "\017\ufff6\001\002\000\004\002\001\001\002\000\006\014" +
+    "\uffef\017\uffef\001\002\000\006\014\036\017\035\001\002" +
+    "\000\012\002\ufff8\012\ufff8\014\ufff8\017\ufff8\001\002\000" +
+    "\020\004\030\005\026\006\024\007\027\010\021\011\007" +
+    "\013\004\001\002\000\012\002\ufff9\012\ufff9\014\ufff9\017" +
+    "\ufff9\001\002\000\006\014\ufff0\017\ufff0\001\002" });
 
   /** Access to parse-action table. */
   public short[][] action_table() {return _action_table;}
@@ -65,19 +66,18 @@ public class parser extends java_cup.runtime.lr_parser {
   /** <code>reduce_goto</code> table. */
   protected static final short[][] _reduce_table = 
     unpackFromStrings(new String[] {
-    "\000\037\000\010\003\005\004\004\007\007\001\001\000" +
-    "\010\004\023\007\025\010\032\001\001\000\002\001\001" +
-    "\000\002\001\001\000\004\005\011\001\001\000\002\001" +
-    "\001\000\002\001\001\000\004\006\014\001\001\000\002" +
-    "\001\001\000\004\005\016\001\001\000\002\001\001\000" +
-    "\002\001\001\000\004\006\017\001\001\000\002\001\001" +
-    "\000\010\004\023\007\025\010\022\001\001\000\002\001" +
+    "\000\035\000\010\003\005\004\004\007\007\001\001\000" +
+    "\012\004\022\007\024\010\031\011\032\001\001\000\002" +
+    "\001\001\000\002\001\001\000\006\005\012\006\011\001" +
+    "\001\000\002\001\001\000\002\001\001\000\002\001\001" +
+    "\000\002\001\001\000\002\001\001\000\004\005\016\001" +
+    "\001\000\002\001\001\000\002\001\001\000\010\004\022" +
+    "\007\024\010\021\001\001\000\002\001\001\000\002\001" +
     "\001\000\002\001\001\000\002\001\001\000\002\001\001" +
     "\000\002\001\001\000\002\001\001\000\002\001\001\000" +
-    "\002\001\001\000\002\001\001\000\004\011\035\001\001" +
-    "\000\002\001\001\000\010\004\023\007\025\010\037\001" +
-    "\001\000\002\001\001\000\002\001\001\000\004\011\040" +
-    "\001\001\000\002\001\001" });
+    "\002\001\001\000\002\001\001\000\002\001\001\000\002" +
+    "\001\001\000\010\004\022\007\024\010\036\001\001\000" +
+    "\002\001\001\000\002\001\001" });
 
   /** Access to <code>reduce_goto</code> table. */
   public short[][] reduce_table() {return _reduce_table;}
@@ -117,16 +117,33 @@ public class parser extends java_cup.runtime.lr_parser {
 
 
 
+// where this parser reports syntax errors
+private Errors errors = new Errors();
+
+public parser(java_cup.runtime.Scanner s, Errors errors) {
+    super(s);
+    this.errors = errors;
+}
+
 public void syntax_error(Symbol currToken) {
     if (currToken.value == null) {
-       Errors.fatal(0,0, "Syntax error at end of file");
+       errors.fatal(0,0, "Syntax error at end of file");
     }
     else {
-       Errors.fatal(((TokenVal)currToken.value).linenum,
+       errors.fatal(((TokenVal)currToken.value).linenum,
 	            ((TokenVal)currToken.value).charnum,
 		    "Syntax error");
     }
-    System.exit(-1);
+}
+
+/* the grammar has no error productions, so every syntax error ends up here */
+public void unrecovered_syntax_error(Symbol currToken) throws SyntaxError {
+    if (currToken.value == null) {
+       throw new SyntaxError(0, 0, "Syntax error at end of file");
+    }
+    throw new SyntaxError(((TokenVal)currToken.value).linenum,
+                          ((TokenVal)currToken.value).charnum,
+                          "Syntax error");
 }
 
 }
@@ -155,25 +172,28 @@ class CUP$parser$actions {
       switch (CUP$parser$act_num)
         {
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 18: // valueList ::= 
+          case 18: // valueList ::= val 
             {
-              LinkedList RESULT = null;
-		 RESULT = new LinkedList(); 
-              CUP$parser$result = new java_cup.runtime.Symbol(7/*valueList*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
+              JsonValueList RESULT = null;
+		int vleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left;
+		int vright = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right;
+		JsonValue v = (JsonValue)((java_cup.runtime.Symbol) CUP$parser$stack.elementAt(CUP$parser$top-0)).value;
+		 RESULT = new JsonValueList(); RESULT.add(v); 
+              CUP$parser$result = new java_cup.runtime.Symbol(7/*valueList*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
             }
           return CUP$parser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 17: // valueList ::= COMMA val valueList 
+          case 17: // valueList ::= valueList COMMA val 
             {
-              LinkedList RESULT = null;
-		int vleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-1)).left;
-		int vright = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-1)).right;
-		JsonValue v = (JsonValue)((java_cup.runtime.Symbol) CUP$parser$stack.elementAt(CUP$parser$top-1)).value;
-		int vlleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left;
-		int vlright = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right;
-		LinkedList vl = (LinkedList)((java_cup.runtime.Symbol) CUP$parser$stack.elementAt(CUP$parser$top-0)).value;
-		 vl.addFirst(v); RESULT = vl; 
+              JsonValueList RESULT = null;
+		int vlleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).left;
+		int vlright = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).right;
+		JsonValueList vl = (JsonValueList)((java_cup.runtime.Symbol) CUP$parser$stack.elementAt(CUP$parser$top-2)).value;
+		int vleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left;
+		int vright = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right;
+		JsonValue v = (JsonValue)((java_cup.runtime.Symbol) CUP$parser$stack.elementAt(CUP$parser$top-0)).value;
+		 vl.add(v); RESULT = vl; 
               CUP$parser$result = new java_cup.runtime.Symbol(7/*valueList*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
             }
           return CUP$parser$result;
@@ -245,7 +265,7 @@ class CUP$parser$actions {
 		int ileft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left;
 		int iright = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right;
 		NumberTokenVal i = (NumberTokenVal)((java_cup.runtime.Symbol) CUP$parser$stack.elementAt(CUP$parser$top-0)).value;
-		 RESULT = new NumberLit(i.linenum, i.charnum, i.numberVal); 
+		 RESULT = new NumberLit(i.linenum, i.charnum, i.text); 
               CUP$parser$result = new java_cup.runtime.Symbol(6/*val*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
             }
           return CUP$parser$result;
@@ -266,46 +286,46 @@ class CUP$parser$actions {
           case 9: // array ::= LSQBRACKET RSQBRACKET 
             {
               JsonArray RESULT = null;
-		 RESULT = new JsonArray(new LinkedList()); 
+		 RESULT = new JsonArray(new JsonValueList()); 
               CUP$parser$result = new java_cup.runtime.Symbol(5/*array*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-1)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
             }
           return CUP$parser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 8: // array ::= LSQBRACKET val valueList RSQBRACKET 
+          case 8: // array ::= LSQBRACKET valueList RSQBRACKET 
             {
               JsonArray RESULT = null;
-		int vleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).left;
-		int vright = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).right;
-		JsonValue v = (JsonValue)((java_cup.runtime.Symbol) CUP$parser$stack.elementAt(CUP$parser$top-2)).value;
 		int vlleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-1)).left;
 		int vlright = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-1)).right;
-		LinkedList vl = (LinkedList)((java_cup.runtime.Symbol) CUP$parser$stack.elementAt(CUP$parser$top-1)).value;
-		 vl.addFirst(v); RESULT = new JsonArray(vl); 
-              CUP$parser$result = new java_cup.runtime.Symbol(5/*array*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-3)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
+		JsonValueList vl = (JsonValueList)((java_cup.runtime.Symbol) CUP$parser$stack.elementAt(CUP$parser$top-1)).value;
+		 vl.trimToSize(); RESULT = new JsonArray(vl); 
+              CUP$parser$result = new java_cup.runtime.Symbol(5/*array*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
             }
           return CUP$parser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 7: // pairList ::= 
+          case 7: // pairList ::= pair 
             {
-              LinkedList RESULT = null;
-		 RESULT = new LinkedList(); 
-              CUP$parser$result = new java_cup.runtime.Symbol(4/*pairList*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
+              JsonPairList RESULT = null;
+		int pleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left;
+		int pright = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right;
+		JsonPair p = (JsonPair)((java_cup.runtime.Symbol) CUP$parser$stack.elementAt(CUP$parser$top-0)).value;
+		 RESULT = new JsonPairList(); RESULT.add(p); 
+              CUP$parser$result = new java_cup.runtime.Symbol(4/*pairList*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
             }
           return CUP$parser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 6: // pairList ::= COMMA pair pairList 
+          case 6: // pairList ::= pairList COMMA pair 
             {
-              LinkedList RESULT = null;
-		int pleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-1)).left;
-		int pright = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-1)).right;
-		JsonPair p = (JsonPair)((java_cup.runtime.Symbol) CUP$parser$stack.elementAt(CUP$parser$top-1)).value;
-		int plleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left;
-		int plright = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right;
-		LinkedList pl = (LinkedList)((java_cup.runtime.Symbol) CUP$parser$stack.elementAt(CUP$parser$top-0)).value;
-		 pl.addFirst(p); RESULT = pl; 
+              JsonPairList RESULT = null;
+		int plleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).left;
+		int plright = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).right;
+		JsonPairList pl = (JsonPairList)((java_cup.runtime.Symbol) CUP$parser$stack.elementAt(CUP$parser$top-2)).value;
+		int pleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left;
+		int pright = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right;
+		JsonPair p = (JsonPair)((java_cup.runtime.Symbol) CUP$parser$stack.elementAt(CUP$parser$top-0)).value;
+		 pl.add(p); RESULT = pl; 
               CUP$parser$result = new java_cup.runtime.Symbol(4/*pairList*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
             }
           return CUP$parser$result;
@@ -329,23 +349,20 @@ class CUP$parser$actions {
           case 4: // object ::= LCURLY RCURLY 
             {
               JsonObject RESULT = null;
-		 RESULT = new JsonObject(new LinkedList()); 
+		 RESULT = new JsonObject(new JsonPairList()); 
               CUP$parser$result = new java_cup.runtime.Symbol(2/*object*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-1)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
             }
           return CUP$parser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 3: // object ::= LCURLY pair pairList RCURLY 
+          case 3: // object ::= LCURLY pairList RCURLY 
             {
               JsonObject RESULT = null;
-		int pleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).left;
-		int pright = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).right;
-		JsonPair p = (JsonPair)((java_cup.runtime.Symbol) CUP$parser$stack.elementAt(CUP$parser$top-2)).value;
 		int plleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-1)).left;
 		int plright = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-1)).right;
-		LinkedList pl = (LinkedList)((java_cup.runtime.Symbol) CUP$parser$stack.elementAt(CUP$parser$top-1)).value;
-		 pl.addFirst(p); RESULT = new JsonObject(pl); 
-              CUP$parser$result = new java_cup.runtime.Symbol(2/*object*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-3)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
+		JsonPairList pl = (JsonPairList)((java_cup.runtime.Symbol) CUP$parser$stack.elementAt(CUP$parser$top-1)).value;
+		 pl.trimToSize(); RESULT = new JsonObject(pl); 
+              CUP$parser$result = new java_cup.runtime.Symbol(2/*object*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
             }
           return CUP$parser$result;
 
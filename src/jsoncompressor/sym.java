@@ -1,9 +1,11 @@
 
 //----------------------------------------------------
 // The following code was generated by CUP v0.10k
-// Wed Jun 03 11:02:00 ICT 2015
+// Sun Oct 18 05:25:04 UTC 2026
 //----------------------------------------------------
 
+package jsoncompressor;
+
 /** CUP generated class containing symbol constants. */
 public class sym {
   /* terminals */
@@ -1,4 +1,6 @@
-java -cp jlex.jar JLex.Main c.jlex
-java -cp javacup.jar java_cup.Main c.cup
-javac -classpath jlex.jar;javacup.jar *.java
-java -classpath .;jlex.jar;javacup.jar JSONCompressor %1 %2
\ No newline at end of file
+cd jsoncompressor
+java -cp ..\jlex.jar JLex.Main c.jlex
+java -cp ..\javacup.jar java_cup.Main c.cup
+cd ..
+javac -classpath .;json-simple-1.1.1.jar;jlex.jar;javacup.jar jsoncompressor\*.java
+java -classpath .;json-simple-1.1.1.jar;jlex.jar;javacup.jar jsoncompressor.JSONCompressor %1 %2
\ No newline at end of file